@@ -13,4 +13,17 @@ public interface CreatorFromRow<T> {
    * @throws FactoryFailureException for errors when creator handles the row data
    */
   T create(List<String> row) throws FactoryFailureException;
+
+  /**
+   * Create a T object from the row the parser is on, which is what the parsers call. Override it to
+   * read numbers without making Strings of them; by default a copy of the row goes to create(List),
+   * which may keep it.
+   *
+   * @param row the row the parser is on
+   * @return a T object
+   * @throws FactoryFailureException for errors when creator handles the row data
+   */
+  default T create(RowCursor row) throws FactoryFailureException {
+    return create(List.copyOf(row.asList()));
+  }
 }
@@ -0,0 +1,71 @@
+package edu.brown.cs32.student.csv.creator;
+
+import java.util.List;
+
+/**
+ * The row a parser is on, read in place.
+ *
+ * <p>Numbers are parsed straight from the parser's buffer, without making a String first, and give
+ * the same values and NumberFormatExceptions as Integer.parseInt, Long.parseLong and
+ * Double.parseDouble. The cursor moves on with the parser, so nothing read from it but Strings and
+ * numbers should be kept after the creator returns.
+ */
+public interface RowCursor {
+  /**
+   * Size getter
+   *
+   * @return number of cells in the row
+   */
+  int size();
+
+  /**
+   * A cell without copying it
+   *
+   * @param col index of the cell
+   * @return the cell, only valid while the parser is on this row
+   */
+  CharSequence getCharSequence(int col);
+
+  /**
+   * A cell as a String
+   *
+   * @param col index of the cell
+   * @return a new String of the cell
+   */
+  String getString(int col);
+
+  /**
+   * A cell as an int
+   *
+   * @param col index of the cell
+   * @return the value Integer.parseInt gives
+   * @throws NumberFormatException when the cell is not an int
+   */
+  int getInt(int col);
+
+  /**
+   * A cell as a long
+   *
+   * @param col index of the cell
+   * @return the value Long.parseLong gives
+   * @throws NumberFormatException when the cell is not a long
+   */
+  long getLong(int col);
+
+  /**
+   * A cell as a double
+   *
+   * @param col index of the cell
+   * @return the value Double.parseDouble gives
+   * @throws NumberFormatException when the cell is not a double
+   */
+  double getDouble(int col);
+
+  /**
+   * The row as a list
+   *
+   * @return a view making Strings of the cells asked for, only valid while the parser is on this
+   *     row
+   */
+  List<String> asList();
+}
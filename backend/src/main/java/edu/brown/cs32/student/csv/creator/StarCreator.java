@@ -25,4 +25,20 @@ public class StarCreator implements CreatorFromRow<Star> {
             Double.parseDouble(row.get(4)));
     return s;
   }
+
+  /**
+   * Create a Star object reading the numbers straight from the parser
+   *
+   * @param row the row the parser is on
+   * @return a Star object
+   * @throws FactoryFailureException for errors when creator handles the row data
+   */
+  @Override
+  public Star create(RowCursor row) throws FactoryFailureException {
+    if (row.size() != 5) {
+      throw new FactoryFailureException("Cannot construct Star object", row.asList());
+    }
+    return new Star(
+        row.getInt(0), row.getString(1), row.getDouble(2), row.getDouble(3), row.getDouble(4));
+  }
 }
@@ -15,4 +15,15 @@ public class StringListCreator implements CreatorFromRow<List<String>> {
   public List<String> create(List<String> row) {
     return new ArrayList<>(row);
   }
+
+  /**
+   * Create a List String from the row the parser is on, copying it once
+   *
+   * @param row the row the parser is on
+   * @return a List String
+   */
+  @Override
+  public List<String> create(RowCursor row) {
+    return new ArrayList<>(row.asList());
+  }
 }
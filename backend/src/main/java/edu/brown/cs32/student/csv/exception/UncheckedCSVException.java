@@ -0,0 +1,14 @@
+package edu.brown.cs32.student.csv.exception;
+
+/**
+ * Wraps a WrongFormatCSVException or FactoryFailureException where a checked exception cannot be
+ * thrown, like from an Iterator
+ */
+public class UncheckedCSVException extends RuntimeException {
+  private static final long serialVersionUID = 1L;
+
+  /** Constructor */
+  public UncheckedCSVException(Exception cause) {
+    super(cause.getMessage(), cause);
+  }
+}
@@ -1,33 +1,55 @@
 package edu.brown.cs32.student.csv.parser;
 
 import edu.brown.cs32.student.csv.creator.CreatorFromRow;
+import edu.brown.cs32.student.csv.creator.RowCursor;
 import edu.brown.cs32.student.csv.exception.FactoryFailureException;
+import edu.brown.cs32.student.csv.exception.UncheckedCSVException;
 import edu.brown.cs32.student.csv.exception.WrongFormatCSVException;
-import java.io.BufferedReader;
+import edu.brown.cs32.student.csv.table.CSVTable;
 import java.io.IOException;
 import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
-/** Parse the CSV data into user-specified `List T` data from a given `Reader` */
+/**
+ * Parse the CSV data into user-specified `List T` data from a given `Reader`
+ *
+ * <p>The row handed to the creator is only valid during the call, its cells become Strings when
+ * they are read. Rows can be collected all at once with {@link #parse}, or taken one at a time with
+ * {@link #iterator}, {@link #stream} or {@link #forEach}, which only hold the current row. Every
+ * way reads on from where the last one stopped.
+ */
 public class CSVParser<T> {
   private boolean hasHead;
   private List<String> header;
-  private BufferedReader br;
+  private CSVTokenizer tokenizer;
   private CreatorFromRow<T> creator;
+  // cells in every row, -1 until the first line is read or when there is none
+  private int rowItemNum = -1;
+  private boolean started;
+  // the first line is a row which is not handed out yet
+  private boolean pending;
+
   /** Constructor */
   public CSVParser(boolean hasHead, Reader r, CreatorFromRow<T> c) {
     this.hasHead = hasHead;
     if (hasHead) header = new ArrayList<>();
     else header = null;
-    br = new BufferedReader(r);
+    tokenizer = new CSVTokenizer(r);
     creator = c;
   }
 
   /**
    * Header Getter
    *
-   * @return the CSV header
+   * @return the CSV header, once the first line is read
    */
   public List<String> getHeader() {
     return new ArrayList<>(header);
@@ -36,48 +58,172 @@ public class CSVParser<T> {
   public Boolean getHasHeader() {
     return hasHead;
   }
+
+  /**
+   * Column count getter, reads the first line if it is not read yet
+   *
+   * @return cells in every row, -1 when the CSV is empty
+   */
+  public int getColumnCount() throws IOException, WrongFormatCSVException {
+    start();
+    return rowItemNum;
+  }
+
+  /** gets the rows one at a time */
+  public interface RowConsumer<R> {
+    /**
+     * Take a row
+     *
+     * @param row the row
+     * @return false to stop reading
+     */
+    boolean accept(R row) throws Exception;
+  }
+
   /**
    * Parse the CSV data
    *
    * @return a List of each parsed row
    */
   public List<T> parse(List<T> ret, List<String> header) throws Exception {
-    try {
-      ret.clear();
-      header.clear();
-      String line;
-      int count = 0;
-      int rowItemNum = -1;
-      while ((line = br.readLine()) != null) {
-        count++;
-        List<String> tmp = List.of(line.split(","));
-        if (count == 1) {
-          if (hasHead) {
-            header.addAll(tmp);
+    ret.clear();
+    header.clear();
+    forEach(ret::add);
+    if (hasHead) header.addAll(this.header);
+    return ret;
+  }
+
+  /**
+   * Parse the CSV data into a column store, without the creator
+   *
+   * @return the table of every row
+   */
+  public CSVTable parseTable() throws Exception {
+    start();
+    CSVTable.Builder builder = new CSVTable.Builder(hasHead ? header : List.of());
+    while (nextRow()) builder.addRow(tokenizer.asList());
+    return builder.build();
+  }
+
+  /**
+   * Hand every row over as it is parsed
+   *
+   * @param consumer takes every row made by the creator, in order, until it returns false
+   */
+  public void forEach(RowConsumer<T> consumer) throws Exception {
+    while (nextRow()) {
+      if (!consumer.accept(create())) return;
+    }
+  }
+
+  /**
+   * Hand every row over as it is read, without the creator
+   *
+   * @param consumer takes the cells of every row, in order, until it returns false. The list is
+   *     only valid during the call.
+   */
+  public void forEachRecord(RowConsumer<List<String>> consumer) throws Exception {
+    while (nextRow()) {
+      if (!consumer.accept(tokenizer.asList())) return;
+    }
+  }
+
+  /**
+   * Iterate the rows, parsing one whenever the next is asked for. Parse errors are thrown as
+   * UncheckedIOException and UncheckedCSVException.
+   *
+   * @return the rows made by the creator
+   */
+  public Iterator<T> iterator() {
+    return new Iterator<>() {
+      private T next;
+      private boolean ready, done;
+
+      @Override
+      public boolean hasNext() {
+        if (ready) return true;
+        if (done) return false;
+        try {
+          if (nextRow()) {
+            next = create();
+            ready = true;
           } else {
-            ret.add(creator.create(tmp));
+            done = true;
           }
-          rowItemNum = tmp.size();
-          continue;
-        }
-        if (tmp.size() != rowItemNum) {
-          throw new WrongFormatCSVException(
-              "Wrong CSV data format! Line "
-                  + count
-                  + " has "
-                  + tmp.size()
-                  + " columns, but should be "
-                  + rowItemNum);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        } catch (WrongFormatCSVException | FactoryFailureException e) {
+          throw new UncheckedCSVException(e);
         }
-        ret.add(creator.create(tmp));
+        return ready;
       }
-    } catch (IOException e) {
-      throw e;
+
+      @Override
+      public T next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        T ret = next;
+        next = null;
+        ready = false;
+        return ret;
+      }
+    };
+  }
+
+  /**
+   * The rows as a sequential stream, parsed as the stream is consumed, so short-circuiting
+   * operations stop reading. Parse errors are thrown as UncheckedIOException and
+   * UncheckedCSVException.
+   *
+   * @return the rows made by the creator
+   */
+  public Stream<T> stream() {
+    return StreamSupport.stream(
+        Spliterators.spliteratorUnknownSize(iterator(), Spliterator.ORDERED | Spliterator.NONNULL),
+        false);
+  }
+
+  /** read the first line, the header or a row which is then handed out first */
+  private void start() throws IOException, WrongFormatCSVException {
+    if (started) return;
+    started = true;
+    if (!tokenizer.next()) return;
+    rowItemNum = tokenizer.size();
+    if (hasHead) header.addAll(tokenizer.asList());
+    else pending = true;
+  }
+
+  /** read the next row into the tokenizer, false at the end */
+  private boolean nextRow() throws IOException, WrongFormatCSVException {
+    start();
+    if (pending) {
+      pending = false;
+      return true;
+    }
+    if (!tokenizer.next()) return false;
+    if (tokenizer.size() != rowItemNum) {
+      throw wrongFormat(tokenizer.line(), tokenizer.size(), rowItemNum);
+    }
+    return true;
+  }
+
+  /** the current row made by the creator */
+  private T create() throws FactoryFailureException {
+    try {
+      return creator.create((RowCursor) tokenizer);
     } catch (FactoryFailureException e) {
       System.err.println(e.getMessage());
       System.err.println(e.getRow().toString());
       throw e;
     }
-    return ret;
+  }
+
+  static WrongFormatCSVException wrongFormat(int line, int size, int rowItemNum) {
+    return new WrongFormatCSVException(
+        "Wrong CSV data format! Line "
+            + line
+            + " has "
+            + size
+            + " columns, but should be "
+            + rowItemNum);
   }
 }
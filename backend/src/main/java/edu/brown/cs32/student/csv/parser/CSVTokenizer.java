@@ -0,0 +1,350 @@
+package edu.brown.cs32.student.csv.parser;
+
+import edu.brown.cs32.student.csv.creator.RowCursor;
+import edu.brown.cs32.student.csv.exception.WrongFormatCSVException;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * Split CSV text into records and cells as RFC 4180 describes.
+ *
+ * <p>A cell starting with '"' is quoted: it ends at the next lone quote, and may hold commas, line
+ * breaks and quotes written twice. A quote anywhere else is kept as it is. Records end at \n, \r\n
+ * or \r like BufferedReader.readLine does, and text after the last line break is a record as well.
+ *
+ * <p>The text is read into one char buffer, which only grows to hold the longest record. Cells are
+ * slices of that buffer: they stay valid until the next record is read, and become Strings only
+ * when asked for. Numbers are read straight from the buffer as well.
+ */
+public class CSVTokenizer implements RowCursor {
+  private static final int BUFFER_SIZE = 1 << 16;
+  private static final long[] POWERS_OF_TEN = new long[16];
+  private static final double[] POWERS_OF_TEN_D = new double[16];
+
+  static {
+    POWERS_OF_TEN[0] = 1;
+    for (int i = 1; i < POWERS_OF_TEN.length; i++) POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+    for (int i = 0; i < POWERS_OF_TEN.length; i++) POWERS_OF_TEN_D[i] = POWERS_OF_TEN[i];
+  }
+
+  // null when the whole text is in the buffer
+  private final Reader reader;
+  private char[] buf;
+  private int pos, limit;
+  // start of the current record, kept in the buffer when it is refilled
+  private int mark;
+  // start and end of the cell being read, its content is written back without quotes
+  private int cellStart, write;
+
+  private int cells;
+  private int[] starts = new int[16], ends = new int[16];
+  private Cell[] slices = new Cell[0];
+  private final List<String> row = new Row();
+
+  private int line;
+  private int lineBreaks;
+  private int strayQuotes;
+
+  /**
+   * Constructor
+   *
+   * @param reader the CSV text
+   */
+  public CSVTokenizer(Reader reader) {
+    this(reader, 0);
+  }
+
+  /**
+   * Constructor over text which starts further down a file
+   *
+   * @param reader the CSV text
+   * @param lineBreaks line breaks before the text
+   */
+  CSVTokenizer(Reader reader, int lineBreaks) {
+    this.reader = reader;
+    this.buf = new char[BUFFER_SIZE];
+    this.lineBreaks = lineBreaks;
+  }
+
+  /**
+   * Constructor over text already in memory, the chars are overwritten while reading
+   *
+   * @param chars the CSV text
+   * @param length number of chars used
+   */
+  public CSVTokenizer(char[] chars, int length) {
+    this.reader = null;
+    this.buf = chars;
+    this.limit = length;
+  }
+
+  /**
+   * Read the next record
+   *
+   * @return false at the end of the text
+   * @throws WrongFormatCSVException when the text ends inside a quoted cell
+   */
+  public boolean next() throws IOException, WrongFormatCSVException {
+    cells = 0;
+    mark = pos;
+    if (pos == limit && !fill()) return false;
+    line = lineBreaks + 1;
+    while (true) {
+      cellStart = write = pos;
+      if ((pos < limit || fill()) && buf[pos] == '"') readQuoted();
+      int c = readUnquoted();
+      endCell();
+      if (c == ',') continue;
+      if (c == '\r' && peek() == '\n') pos++;
+      if (c >= 0) lineBreaks++;
+      return true;
+    }
+  }
+
+  @Override
+  public int size() {
+    return cells;
+  }
+
+  @Override
+  public CharSequence getCharSequence(int col) {
+    Objects.checkIndex(col, cells);
+    return slices[col];
+  }
+
+  @Override
+  public String getString(int col) {
+    Objects.checkIndex(col, cells);
+    return new String(buf, starts[col], ends[col] - starts[col]);
+  }
+
+  @Override
+  public int getInt(int col) {
+    Objects.checkIndex(col, cells);
+    int from = starts[col], to = ends[col];
+    boolean negative = from < to && buf[from] == '-';
+    if (from < to && (negative || buf[from] == '+')) from++;
+    // up to 9 digits always fit
+    long value = from < to && to - from <= 9 ? digits(from, to) : -1;
+    if (value < 0) return Integer.parseInt(getString(col));
+    return (int) (negative ? -value : value);
+  }
+
+  @Override
+  public long getLong(int col) {
+    Objects.checkIndex(col, cells);
+    int from = starts[col], to = ends[col];
+    boolean negative = from < to && buf[from] == '-';
+    if (from < to && (negative || buf[from] == '+')) from++;
+    // up to 18 digits always fit
+    long value = from < to && to - from <= 18 ? digits(from, to) : -1;
+    if (value < 0) return Long.parseLong(getString(col));
+    return negative ? -value : value;
+  }
+
+  @Override
+  public double getDouble(int col) {
+    Objects.checkIndex(col, cells);
+    int from = starts[col], to = ends[col];
+    boolean negative = from < to && buf[from] == '-';
+    if (from < to && (negative || buf[from] == '+')) from++;
+    int dot = from;
+    while (dot < to && buf[dot] != '.') dot++;
+    int fraction = dot < to ? to - dot - 1 : 0;
+    int digits = dot - from + fraction;
+    // a mantissa below 10^15 and a power of ten below 10^22 are both exact doubles, so one
+    // division rounds the way Double.parseDouble does
+    if (digits > 0 && digits <= 15) {
+      long integer = digits(from, dot);
+      long decimals = dot < to ? digits(dot + 1, to) : 0;
+      if (integer >= 0 && decimals >= 0) {
+        double value = (integer * POWERS_OF_TEN[fraction] + decimals) / POWERS_OF_TEN_D[fraction];
+        return negative ? -value : value;
+      }
+    }
+    return Double.parseDouble(getString(col));
+  }
+
+  @Override
+  public List<String> asList() {
+    return row;
+  }
+
+  /**
+   * Line getter
+   *
+   * @return the line the current record starts on, counted from 1
+   */
+  public int line() {
+    return line;
+  }
+
+  /**
+   * Line breaks getter
+   *
+   * @return number of line breaks read so far, quoted ones included
+   */
+  public int lineBreaks() {
+    return lineBreaks;
+  }
+
+  /**
+   * Stray quotes getter
+   *
+   * @return number of quotes read so far which were kept as they are in an unquoted cell
+   */
+  public int strayQuotes() {
+    return strayQuotes;
+  }
+
+  private void endCell() {
+    if (cells == starts.length) {
+      starts = Arrays.copyOf(starts, cells * 2);
+      ends = Arrays.copyOf(ends, cells * 2);
+    }
+    if (cells == slices.length) {
+      slices = Arrays.copyOf(slices, Math.max(16, cells * 2));
+      for (int i = cells; i < slices.length; i++) slices[i] = new Cell(i);
+    }
+    starts[cells] = cellStart;
+    ends[cells] = write;
+    cells++;
+  }
+
+  /**
+   * Read the rest of a cell up to a comma or a line break, most cells are read here without being
+   * moved in the buffer
+   *
+   * @return the char which ended the cell, or -1 at the end of the text
+   */
+  private int readUnquoted() throws IOException {
+    while (true) {
+      char[] b = buf;
+      int p = pos, w = write, l = limit;
+      while (p < l) {
+        char c = b[p++];
+        // ',', '\n', '\r' and '"' all sort before the usual cell content
+        if (c <= ',') {
+          if (c == ',' || c == '\n' || c == '\r') {
+            pos = p;
+            write = w;
+            return c;
+          }
+          if (c == '"') strayQuotes++;
+        }
+        b[w++] = c;
+      }
+      pos = p;
+      write = w;
+      if (!fill()) return -1;
+    }
+  }
+
+  /** read a quoted cell up to its closing quote, writing it back without quotes */
+  private void readQuoted() throws IOException, WrongFormatCSVException {
+    pos++;
+    while (true) {
+      if (pos == limit && !fill()) {
+        throw new WrongFormatCSVException(
+            "Wrong CSV data format! Line " + line + " has an unclosed quote");
+      }
+      char c = buf[pos++];
+      if (c == '"') {
+        if (peek() != '"') return;
+        pos++;
+      } else if (c == '\n' || (c == '\r' && peek() != '\n')) {
+        lineBreaks++;
+      }
+      buf[write++] = c;
+    }
+  }
+
+  /** value of the ASCII digits in [from, to), 0 when empty, -1 when something else is there */
+  private long digits(int from, int to) {
+    long value = 0;
+    for (int i = from; i < to; i++) {
+      int digit = buf[i] - '0';
+      if (digit < 0 || digit > 9) return -1;
+      value = value * 10 + digit;
+    }
+    return value;
+  }
+
+  /** the next char without reading it, or -1 at the end of the text */
+  private int peek() throws IOException {
+    if (pos == limit && !fill()) return -1;
+    return buf[pos];
+  }
+
+  /** read more text behind the current record, moving the record to the front of the buffer */
+  private boolean fill() throws IOException {
+    if (reader == null) return false;
+    if (mark > 0) {
+      int shift = mark;
+      System.arraycopy(buf, shift, buf, 0, limit - shift);
+      pos -= shift;
+      limit -= shift;
+      mark = 0;
+      cellStart -= shift;
+      write -= shift;
+      for (int i = 0; i < cells; i++) {
+        starts[i] -= shift;
+        ends[i] -= shift;
+      }
+    }
+    if (limit == buf.length) buf = Arrays.copyOf(buf, buf.length * 2);
+    int n = reader.read(buf, limit, buf.length - limit);
+    if (n <= 0) return false;
+    limit += n;
+    return true;
+  }
+
+  /** a cell of the current record, reused for every record */
+  private final class Cell implements CharSequence {
+    private final int index;
+
+    private Cell(int index) {
+      this.index = index;
+    }
+
+    @Override
+    public int length() {
+      return ends[index] - starts[index];
+    }
+
+    @Override
+    public char charAt(int i) {
+      Objects.checkIndex(i, length());
+      return buf[starts[index] + i];
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+      Objects.checkFromToIndex(start, end, length());
+      return new String(buf, starts[index] + start, end - start);
+    }
+
+    @Override
+    public String toString() {
+      return new String(buf, starts[index], length());
+    }
+  }
+
+  /** the current record as a list */
+  private final class Row extends AbstractList<String> implements RandomAccess {
+    @Override
+    public String get(int i) {
+      return getString(i);
+    }
+
+    @Override
+    public int size() {
+      return cells;
+    }
+  }
+}
@@ -0,0 +1,361 @@
+package edu.brown.cs32.student.csv.parser;
+
+import edu.brown.cs32.student.csv.creator.CreatorFromRow;
+import edu.brown.cs32.student.csv.creator.RowCursor;
+import edu.brown.cs32.student.csv.exception.FactoryFailureException;
+import edu.brown.cs32.student.csv.exception.WrongFormatCSVException;
+import edu.brown.cs32.student.csv.table.CSVTable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Parse a CSV file on several threads, with the same results and errors as {@link CSVParser}.
+ *
+ * <p>The file is memory-mapped and cut into byte ranges that start right after a newline outside of
+ * quoted cells, so every range holds whole records. Workers tokenize and convert the records of a
+ * range on their own; the rows of the ranges are then taken in file order, and line numbers in
+ * errors are counted from the start of the file. Ranges are about 4 MB, and only a few per worker
+ * are in flight at a time, so rows waiting to be taken stay bounded by those few ranges whatever
+ * the size of the file. The file is read as UTF-8.
+ *
+ * <p>Where a quote is not around a cell, as RFC 4180 wants, counting quotes may cut a record in
+ * two, so from the first range holding such a quote the file is read in order on the calling
+ * thread.
+ */
+public class ParallelCSVParser<T> {
+  // ranges per worker, so a slow range does not hold up the others
+  private static final int RANGES_PER_WORKER = 4;
+  // bytes per range in larger files, so ranges in flight hold a few MB of rows each
+  private static final long RANGE_SIZE = 4L << 20;
+  // a mapped buffer holds at most 2 GB
+  private static final long MAX_RANGE = 1L << 30;
+
+  private final boolean hasHead;
+  private final Path path;
+  private final CreatorFromRow<T> creator;
+  private final int parallelism;
+
+  /**
+   * Constructor
+   *
+   * @param hasHead whether the first line is the header
+   * @param path the CSV file
+   * @param c creates a T from every row
+   * @param parallelism number of worker threads
+   */
+  public ParallelCSVParser(boolean hasHead, Path path, CreatorFromRow<T> c, int parallelism) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("get parallelism=" + parallelism + ", should be positive");
+    }
+    this.hasHead = hasHead;
+    this.path = path;
+    this.creator = c;
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * Parse the CSV data
+   *
+   * @return a List of each parsed row
+   */
+  public List<T> parse(List<T> ret, List<String> header) throws Exception {
+    ret.clear();
+    header.clear();
+    read(header, creator::create, ret::add);
+    return ret;
+  }
+
+  /**
+   * Parse the CSV data into a column store, without the creator
+   *
+   * @return the table of every row
+   */
+  public CSVTable parseTable() throws Exception {
+    List<String> header = new ArrayList<>();
+    CSVTable.Builder[] builder = {null};
+    read(
+        header,
+        // the tokenizer reuses its row
+        row -> new ArrayList<>(row.asList()),
+        row -> {
+          if (builder[0] == null) builder[0] = new CSVTable.Builder(header);
+          builder[0].addRow(row);
+        });
+    if (builder[0] == null) builder[0] = new CSVTable.Builder(header);
+    return builder[0].build();
+  }
+
+  /** turns a row into a result, on a worker */
+  private interface RowMapper<R> {
+    R map(RowCursor row) throws Exception;
+  }
+
+  /** takes the results in file order, on the calling thread */
+  private interface RowSink<R> {
+    void accept(R row) throws Exception;
+  }
+
+  /** what a worker made of one range */
+  private static final class Chunk<R> {
+    final List<R> rows = new ArrayList<>();
+    long from;
+    // line breaks in the range, or the line of the row with the wrong number of columns
+    int lines;
+    int columns;
+    Exception error;
+    boolean strayQuotes;
+  }
+
+  private <R> void read(List<String> header, RowMapper<R> mapper, RowSink<R> sink)
+      throws Exception {
+    ExecutorService pool = Executors.newFixedThreadPool(parallelism);
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size == 0) return;
+      long dataStart = recordEnd(channel, 0);
+      if (dataStart > MAX_RANGE) throw new IOException("a record of " + path + " is over 1 GB");
+      // a stray quote in the first line makes the quote counts wrong, read it all in order
+      if (!oneRecord(channel, dataStart)) {
+        serial(channel, 0, 0, -1, header, mapper, sink);
+        return;
+      }
+      CSVTokenizer first = tokenizer(channel, 0, dataStart);
+      first.next();
+      List<String> tmp = first.asList();
+      int rowItemNum = tmp.size();
+      if (hasHead) header.addAll(tmp);
+      else sink.accept(mapOrThrow(mapper, first));
+      // line breaks before the current range
+      int line = first.lineBreaks();
+
+      List<long[]> ranges = ranges(pool, channel, dataStart, size);
+      Deque<Future<Chunk<R>>> inFlight = new ArrayDeque<>();
+      int next = 0;
+      while (next < ranges.size() || !inFlight.isEmpty()) {
+        while (next < ranges.size() && inFlight.size() < parallelism * RANGES_PER_WORKER) {
+          long[] range = ranges.get(next++);
+          inFlight.addLast(
+              pool.submit(() -> parseRange(channel, range[0], range[1], rowItemNum, mapper)));
+        }
+        Chunk<R> chunk = get(inFlight.removeFirst());
+        // the range may not start or end where a record does, read the rest in order
+        if (chunk.strayQuotes || chunk.error instanceof WrongFormatCSVException) {
+          serial(channel, chunk.from, line, rowItemNum, header, mapper, sink);
+          return;
+        }
+        if (chunk.error instanceof FactoryFailureException e) {
+          System.err.println(e.getMessage());
+          System.err.println(e.getRow().toString());
+          throw e;
+        }
+        if (chunk.error != null) throw chunk.error;
+        if (chunk.columns >= 0) {
+          throw CSVParser.wrongFormat(line + chunk.lines, chunk.columns, rowItemNum);
+        }
+        for (R row : chunk.rows) sink.accept(row);
+        line += chunk.lines;
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  /**
+   * Parse from a record start to the end of the file on this thread
+   *
+   * @param line line breaks before from
+   * @param rowItemNum cells in every row, or -1 when from is the first line
+   */
+  private <R> void serial(
+      FileChannel channel,
+      long from,
+      int line,
+      int rowItemNum,
+      List<String> header,
+      RowMapper<R> mapper,
+      RowSink<R> sink)
+      throws Exception {
+    channel.position(from);
+    CSVTokenizer tokenizer =
+        new CSVTokenizer(Channels.newReader(channel, StandardCharsets.UTF_8), line);
+    List<String> tmp = tokenizer.asList();
+    while (tokenizer.next()) {
+      if (rowItemNum < 0) {
+        if (hasHead) header.addAll(tmp);
+        else sink.accept(mapOrThrow(mapper, tokenizer));
+        rowItemNum = tmp.size();
+        continue;
+      }
+      if (tmp.size() != rowItemNum) {
+        throw CSVParser.wrongFormat(tokenizer.line(), tmp.size(), rowItemNum);
+      }
+      sink.accept(mapOrThrow(mapper, tokenizer));
+    }
+  }
+
+  private static <R> R mapOrThrow(RowMapper<R> mapper, RowCursor row) throws Exception {
+    try {
+      return mapper.map(row);
+    } catch (FactoryFailureException e) {
+      System.err.println(e.getMessage());
+      System.err.println(e.getRow().toString());
+      throw e;
+    }
+  }
+
+  private static <R> R get(Future<R> future) throws Exception {
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof Exception cause) throw cause;
+      throw e;
+    }
+  }
+
+  /** tokenize and convert the records of [from, to), stopping at the first bad one */
+  private static <R> Chunk<R> parseRange(
+      FileChannel channel, long from, long to, int rowItemNum, RowMapper<R> mapper)
+      throws IOException {
+    Chunk<R> chunk = new Chunk<>();
+    chunk.from = from;
+    chunk.columns = -1;
+    CSVTokenizer tokenizer = tokenizer(channel, from, to);
+    List<String> tmp = tokenizer.asList();
+    try {
+      while (tokenizer.next()) {
+        if (tmp.size() != rowItemNum) {
+          chunk.lines = tokenizer.line();
+          chunk.columns = tmp.size();
+          break;
+        }
+        try {
+          chunk.rows.add(mapper.map(tokenizer));
+        } catch (Exception e) {
+          chunk.error = e;
+          break;
+        }
+      }
+    } catch (WrongFormatCSVException e) {
+      chunk.error = e;
+    }
+    if (chunk.columns < 0) chunk.lines = tokenizer.lineBreaks();
+    chunk.strayQuotes = tokenizer.strayQuotes() > 0;
+    return chunk;
+  }
+
+  /** whether [0, to) holds exactly one record without stray quotes */
+  private static boolean oneRecord(FileChannel channel, long to) throws IOException {
+    CSVTokenizer tokenizer = tokenizer(channel, 0, to);
+    try {
+      return tokenizer.next() && tokenizer.strayQuotes() == 0 && !tokenizer.next();
+    } catch (WrongFormatCSVException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Cut [from, size) into ranges that each start after a newline outside of quotes. Outside of
+   * quotes is after an even number of quotes, which the workers count first.
+   */
+  private List<long[]> ranges(ExecutorService pool, FileChannel channel, long from, long size)
+      throws Exception {
+    long length = size - from;
+    long count = Math.max(parallelism * RANGES_PER_WORKER, (length + RANGE_SIZE - 1) / RANGE_SIZE);
+    List<Future<long[]>> scans = new ArrayList<>();
+    for (long i = 0; i < count; i++) {
+      long start = from + length * i / count, end = from + length * (i + 1) / count;
+      scans.add(pool.submit(() -> scan(channel, start, end)));
+    }
+    List<long[]> ranges = new ArrayList<>();
+    long start = from;
+    long quotes = 0;
+    for (Future<long[]> scan : scans) {
+      long[] counts = get(scan);
+      long cut = counts[1 + (int) (quotes & 1)];
+      if (cut > start) {
+        add(ranges, start, cut);
+        start = cut;
+      }
+      quotes += counts[0];
+    }
+    if (start < size) add(ranges, start, size);
+    return ranges;
+  }
+
+  private void add(List<long[]> ranges, long from, long to) throws IOException {
+    // a mapped buffer holds at most 2 GB
+    if (to - from > MAX_RANGE) throw new IOException("a record of " + path + " is over 1 GB");
+    ranges.add(new long[] {from, to});
+  }
+
+  /**
+   * Count the quotes of [from, to)
+   *
+   * @return the quotes, the position after the first newline following an even number of them and
+   *     after the first one following an odd number, -1 when there is none
+   */
+  private static long[] scan(FileChannel channel, long from, long to) throws IOException {
+    long quotes = 0, even = -1, odd = -1;
+    if (to > from) {
+      MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+      for (int i = 0, n = bytes.limit(); i < n; i++) {
+        byte b = bytes.get(i);
+        if (b == '"') {
+          quotes++;
+        } else if (b == '\n') {
+          if ((quotes & 1) == 0) {
+            if (even < 0) even = from + i + 1;
+          } else if (odd < 0) {
+            odd = from + i + 1;
+          }
+        }
+      }
+    }
+    return new long[] {quotes, even, odd};
+  }
+
+  /** position after the first newline outside of quotes at or after pos, or the file size */
+  private static long recordEnd(FileChannel channel, long pos) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(8192);
+    long size = channel.size();
+    long quotes = 0;
+    while (pos < size) {
+      buffer.clear();
+      int read = channel.read(buffer, pos);
+      if (read <= 0) break;
+      for (int i = 0; i < read; i++) {
+        byte b = buffer.get(i);
+        if (b == '"') quotes++;
+        else if (b == '\n' && (quotes & 1) == 0) return pos + i + 1;
+      }
+      pos += read;
+    }
+    return size;
+  }
+
+  /**
+   * Tokenizer over the UTF-8 text of [from, to), a newline never falls inside a multi-byte
+   * character
+   */
+  private static CSVTokenizer tokenizer(FileChannel channel, long from, long to)
+      throws IOException {
+    MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+    CharBuffer chars = StandardCharsets.UTF_8.decode(bytes);
+    return new CSVTokenizer(chars.array(), chars.limit());
+  }
+}
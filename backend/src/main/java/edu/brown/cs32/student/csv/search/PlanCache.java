@@ -0,0 +1,64 @@
+package edu.brown.cs32.student.csv.search;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import edu.brown.cs32.student.csv.exception.NoHeaderException;
+import edu.brown.cs32.student.csv.table.CSVTable;
+
+/**
+ * Compiled plans of recent queries, so a repeated query skips parsing and column resolution.
+ *
+ * <p>Plans are keyed by the query and the version of the table they were compiled against, so
+ * loading another CSV never reuses a plan resolved against the old header. The least recently used
+ * plans are dropped first.
+ */
+public class PlanCache {
+  private record Key(String query, long version) {}
+
+  private final Cache<Key, QueryPlan> cache;
+
+  /**
+   * Constructor
+   *
+   * @param cacheSize most plans kept
+   */
+  public PlanCache(int cacheSize) {
+    this.cache =
+        CacheBuilder.newBuilder()
+            // How many entries maximum in the cache?
+            .maximumSize(cacheSize)
+            // Keep statistical info around for profiling purposes
+            .recordStats()
+            .build();
+  }
+
+  /**
+   * The plan of a query, compiled on first use
+   *
+   * @param query the input query string
+   * @param table the table to run against
+   * @return the plan
+   * @throws NoHeaderException when a column name is used and the table has no header
+   * @throws IllegalArgumentException for invalid query format
+   */
+  public QueryPlan plan(String query, CSVTable table)
+      throws NoHeaderException, IllegalArgumentException {
+    Key key = new Key(query, table.version());
+    QueryPlan plan = cache.getIfPresent(key);
+    if (plan == null) {
+      // invalid queries throw here and are not cached
+      plan = QueryPlan.compile(query, table);
+      cache.put(key, plan);
+    }
+    return plan;
+  }
+
+  /**
+   * Cache getter
+   *
+   * @return local cache
+   */
+  public Cache<?, QueryPlan> getCache() {
+    return cache;
+  }
+}
@@ -0,0 +1,300 @@
+package edu.brown.cs32.student.csv.search;
+
+import edu.brown.cs32.student.csv.exception.NoHeaderException;
+import edu.brown.cs32.student.csv.table.CSVTable;
+import edu.brown.cs32.student.csv.table.ValueIndex;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A query compiled against a table, ready to run.
+ *
+ * <p>Compiling parses the prefix expression once, resolves column names to indices and checks every
+ * basic query, so running a plan only touches the data. Nested and/or are flattened, and the
+ * children of an and run cheapest first: ordered by estimated row count (exact when the table is
+ * indexed), a plan stops as soon as the rows left are none, and checks the few rows left one by one
+ * instead of scanning whole columns. A plan keeps no reference to the table it was compiled
+ * against, only what it resolved from it. A plan can also check rows one by one as a file is read,
+ * compiled against the header alone.
+ */
+public abstract class QueryPlan {
+  // the estimated fraction of rows a basic query matches when there is no index to ask
+  private static final int UNINDEXED_SELECTIVITY = 10;
+
+  /** estimated number of matching rows */
+  final long estimate;
+
+  private QueryPlan(long estimate) {
+    this.estimate = estimate;
+  }
+
+  /**
+   * Run the plan
+   *
+   * @param table the table the plan was compiled against
+   * @return a bit per row id, set for the matching rows
+   */
+  public abstract BitSet execute(CSVTable table);
+
+  /**
+   * Check one row, for rows read one by one instead of a table
+   *
+   * @param row the cells of the row
+   * @return whether the row matches
+   */
+  public abstract boolean matches(List<String> row);
+
+  /** what compiling needs to know of the data */
+  private record Schema(List<String> header, int columnCount, int rowCount, ValueIndex index) {
+    static Schema of(CSVTable table) {
+      return new Schema(table.header(), table.columnCount(), table.rowCount(), table.index());
+    }
+  }
+
+  /**
+   * Compile a query
+   *
+   * @param query the input query string
+   * @param table the table to run against
+   * @return the plan
+   * @throws NoHeaderException when a column name is used and the table has no header
+   * @throws IllegalArgumentException for invalid query format
+   */
+  public static QueryPlan compile(String query, CSVTable table)
+      throws NoHeaderException, IllegalArgumentException {
+    return compile(query, Schema.of(table));
+  }
+
+  /**
+   * Compile a query for rows read one by one, to run with {@link #matches}
+   *
+   * @param query the input query string
+   * @param header the CSV header, empty when the file has none
+   * @param columnCount number of cells in every row
+   * @return the plan
+   * @throws NoHeaderException when a column name is used and there is no header
+   * @throws IllegalArgumentException for invalid query format
+   */
+  public static QueryPlan compile(String query, List<String> header, int columnCount)
+      throws NoHeaderException, IllegalArgumentException {
+    return compile(query, new Schema(header, columnCount, 0, null));
+  }
+
+  private static QueryPlan compile(String query, Schema schema)
+      throws NoHeaderException, IllegalArgumentException {
+    List<String> tmp = List.of(query.split(",|\\(|\\)"));
+    return compile(new QueryTree(tmp).root, schema);
+  }
+
+  private static QueryPlan compile(Node node, Schema schema)
+      throws NoHeaderException, IllegalArgumentException {
+    if (!node.isOp) return leaf(node.queryName, schema);
+    List<QueryPlan> children = new ArrayList<>();
+    for (Node child : node.children) children.add(compile(child, schema));
+    if (node.Op.equals("not")) return new Not(children.get(0), schema.rowCount());
+    if (node.Op.equals("and")) return And.of(children);
+    return Or.of(children, schema.rowCount());
+  }
+
+  /** resolve a basic query: target, or target;column;name, or target;index;idx */
+  private static QueryPlan leaf(String query, Schema schema)
+      throws NoHeaderException, IllegalArgumentException {
+    List<String> tmp = List.of(query.split(";"));
+    if (tmp.size() != 1 && tmp.size() != 3)
+      throw new IllegalArgumentException(
+          "Wrong query format! Received " + tmp.size() + " args, but should be 1 or 3");
+    String target = tmp.get(0);
+    ValueIndex index = schema.index();
+    if (tmp.size() == 1) {
+      long estimate = 0;
+      for (int c = 0; c < schema.columnCount(); c++) {
+        estimate += index != null ? index.count(c, target) : estimate(schema);
+      }
+      return new Leaf(-1, target, Math.min(estimate, schema.rowCount()));
+    }
+    boolean byIdx = tmp.get(2).equals("idx");
+    if (!byIdx && schema.header().isEmpty())
+      throw new NoHeaderException(
+          "Cannot use column name as identifier when the CSV has no header");
+    int colIdx = byIdx ? Integer.parseInt(tmp.get(1)) : schema.header().indexOf(tmp.get(1));
+    if (colIdx < 0 || colIdx >= schema.columnCount()) return new None();
+    return new Leaf(colIdx, target, index != null ? index.count(colIdx, target) : estimate(schema));
+  }
+
+  private static long estimate(Schema schema) {
+    return Math.max(1, schema.rowCount() / UNINDEXED_SELECTIVITY);
+  }
+
+  /** rows holding target in one column, or in any column when column is -1 */
+  static final class Leaf extends QueryPlan {
+    private final int column;
+    private final String target;
+
+    Leaf(int column, String target, long estimate) {
+      super(estimate);
+      this.column = column;
+      this.target = target;
+    }
+
+    @Override
+    public BitSet execute(CSVTable table) {
+      BitSet ret = new BitSet(table.rowCount());
+      ValueIndex index = table.index();
+      int from = column < 0 ? 0 : column;
+      int to = column < 0 ? table.columnCount() : column + 1;
+      for (int c = from; c < to; c++) {
+        if (index != null) {
+          for (int row : index.rows(c, target)) ret.set(row);
+        } else {
+          table.column(c).matches(target, ret::set);
+        }
+      }
+      return ret;
+    }
+
+    @Override
+    public boolean matches(List<String> row) {
+      if (column >= 0) return row.get(column).equals(target);
+      for (int c = 0; c < row.size(); c++) {
+        if (row.get(c).equals(target)) return true;
+      }
+      return false;
+    }
+
+    /** keep the candidate rows holding target, checking them one by one */
+    void filter(CSVTable table, BitSet candidates) {
+      int from = column < 0 ? 0 : column;
+      int to = column < 0 ? table.columnCount() : column + 1;
+      for (int row = candidates.nextSetBit(0); row >= 0; row = candidates.nextSetBit(row + 1)) {
+        boolean match = false;
+        for (int c = from; c < to && !match; c++) {
+          match = table.column(c).get(row).equals(target);
+        }
+        if (!match) candidates.clear(row);
+      }
+    }
+  }
+
+  /** a column that does not exist matches nothing */
+  static final class None extends QueryPlan {
+    None() {
+      super(0);
+    }
+
+    @Override
+    public BitSet execute(CSVTable table) {
+      return new BitSet();
+    }
+
+    @Override
+    public boolean matches(List<String> row) {
+      return false;
+    }
+  }
+
+  static final class Not extends QueryPlan {
+    private final QueryPlan child;
+
+    Not(QueryPlan child, int rows) {
+      super(Math.max(0, rows - child.estimate));
+      this.child = child;
+    }
+
+    @Override
+    public BitSet execute(CSVTable table) {
+      BitSet ret = child.execute(table);
+      ret.flip(0, table.rowCount());
+      return ret;
+    }
+
+    @Override
+    public boolean matches(List<String> row) {
+      return !child.matches(row);
+    }
+  }
+
+  static final class And extends QueryPlan {
+    // a leaf checks rows one by one when fewer than 1 in this many are left
+    private static final int FILTER_RATIO = 64;
+
+    private final List<QueryPlan> children;
+
+    private And(List<QueryPlan> children) {
+      super(children.get(0).estimate);
+      this.children = children;
+    }
+
+    static And of(List<QueryPlan> children) {
+      List<QueryPlan> flat = new ArrayList<>();
+      for (QueryPlan child : children) {
+        if (child instanceof And and) flat.addAll(and.children);
+        else flat.add(child);
+      }
+      // the most selective first
+      flat.sort(Comparator.comparingLong(child -> child.estimate));
+      return new And(flat);
+    }
+
+    @Override
+    public BitSet execute(CSVTable table) {
+      BitSet ret = children.get(0).execute(table);
+      for (int i = 1; i < children.size() && !ret.isEmpty(); i++) {
+        QueryPlan child = children.get(i);
+        if (child instanceof Leaf leaf
+            && (long) ret.cardinality() * FILTER_RATIO < table.rowCount()) {
+          leaf.filter(table, ret);
+        } else {
+          ret.and(child.execute(table));
+        }
+      }
+      return ret;
+    }
+
+    @Override
+    public boolean matches(List<String> row) {
+      for (QueryPlan child : children) {
+        if (!child.matches(row)) return false;
+      }
+      return true;
+    }
+  }
+
+  static final class Or extends QueryPlan {
+    private final List<QueryPlan> children;
+
+    private Or(List<QueryPlan> children, long estimate) {
+      super(estimate);
+      this.children = children;
+    }
+
+    static Or of(List<QueryPlan> children, int rows) {
+      List<QueryPlan> flat = new ArrayList<>();
+      long estimate = 0;
+      for (QueryPlan child : children) {
+        if (child instanceof Or or) flat.addAll(or.children);
+        else flat.add(child);
+        estimate += child.estimate;
+      }
+      return new Or(flat, Math.min(estimate, rows));
+    }
+
+    @Override
+    public BitSet execute(CSVTable table) {
+      BitSet ret = children.get(0).execute(table);
+      for (int i = 1; i < children.size() && ret.cardinality() < table.rowCount(); i++) {
+        ret.or(children.get(i).execute(table));
+      }
+      return ret;
+    }
+
+    @Override
+    public boolean matches(List<String> row) {
+      for (QueryPlan child : children) {
+        if (child.matches(row)) return true;
+      }
+      return false;
+    }
+  }
+}
@@ -0,0 +1,238 @@
+package edu.brown.cs32.student.csv.table;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A loaded CSV stored by column.
+ *
+ * <p>Rows are identified by their position, the row id. Every column keeps one vector over all row
+ * ids: a long or double array when every cell of the column is a number written the way Java writes
+ * it back, otherwise a dictionary of the distinct strings and an int code per row. So a table takes
+ * a few bytes per cell instead of a String and a list slot, and searching a column is a loop over
+ * an array. Tables are immutable once built and can be shared between threads.
+ */
+public final class CSVTable {
+  private static final AtomicLong versions = new AtomicLong();
+
+  private final long version = versions.incrementAndGet();
+  private final List<String> header;
+  private final Column[] columns;
+  private final int rowCount;
+  private final ValueIndex index;
+
+  private CSVTable(List<String> header, Column[] columns, int rowCount, ValueIndex index) {
+    this.header = header;
+    this.columns = columns;
+    this.rowCount = rowCount;
+    this.index = index;
+  }
+
+  /**
+   * The same table with an inverted index over it
+   *
+   * @return the indexed table, this when already indexed
+   */
+  public CSVTable withIndex() {
+    if (index != null) return this;
+    return new CSVTable(header, columns, rowCount, ValueIndex.build(this));
+  }
+
+  /**
+   * Index getter
+   *
+   * @return the inverted index, null when the table was not indexed
+   */
+  public ValueIndex index() {
+    return index;
+  }
+
+  /**
+   * Bytes getter
+   *
+   * @return heap taken by the columns and the index, estimated
+   */
+  public long bytes() {
+    long bytes = index != null ? index.stats().bytes() : 0;
+    for (Column column : columns) bytes += column.bytes();
+    return bytes;
+  }
+
+  /**
+   * Version getter
+   *
+   * @return a number no other table built in this process has
+   */
+  public long version() {
+    return version;
+  }
+
+  /**
+   * Header getter
+   *
+   * @return the CSV header, empty when the file has none
+   */
+  public List<String> header() {
+    return header;
+  }
+
+  public boolean hasHeader() {
+    return !header.isEmpty();
+  }
+
+  public int rowCount() {
+    return rowCount;
+  }
+
+  public int columnCount() {
+    return columns.length;
+  }
+
+  /**
+   * Column getter
+   *
+   * @param index the column index
+   * @return the column
+   */
+  public Column column(int index) {
+    return columns[index];
+  }
+
+  /**
+   * Look up a column by name
+   *
+   * @param name a header name
+   * @return index of the first column with that name, -1 when there is none
+   */
+  public int columnIndex(String name) {
+    return header.indexOf(name);
+  }
+
+  /**
+   * Row getter
+   *
+   * @param row the row id
+   * @return the cells of the row
+   */
+  public List<String> row(int row) {
+    List<String> cells = new ArrayList<>(columns.length);
+    for (Column column : columns) cells.add(column.get(row));
+    return cells;
+  }
+
+  /**
+   * All rows, built on access
+   *
+   * @return a list view of every row
+   */
+  public List<List<String>> rows() {
+    return new AbstractList<>() {
+      @Override
+      public List<String> get(int index) {
+        return row(index);
+      }
+
+      @Override
+      public int size() {
+        return rowCount;
+      }
+    };
+  }
+
+  /** Collects rows column by column and picks every column's storage when built */
+  public static final class Builder {
+    private final List<String> header;
+    private ColumnBuilder[] columns;
+    private int rowCount;
+
+    /**
+     * Constructor
+     *
+     * @param header the CSV header, empty when the file has none
+     */
+    public Builder(List<String> header) {
+      this.header = List.copyOf(header);
+      if (!header.isEmpty()) columns = newColumns(header.size());
+    }
+
+    /**
+     * Add the next row
+     *
+     * @param row the cells, as many as the header or the first row has
+     */
+    public void addRow(List<String> row) {
+      if (columns == null) columns = newColumns(row.size());
+      if (row.size() != columns.length) {
+        throw new IllegalArgumentException(
+            "row " + rowCount + " has " + row.size() + " cells, but should be " + columns.length);
+      }
+      for (int c = 0; c < columns.length; c++) columns[c].add(row.get(c));
+      rowCount++;
+    }
+
+    public CSVTable build() {
+      Column[] built = new Column[columns == null ? 0 : columns.length];
+      for (int c = 0; c < built.length; c++) {
+        built[c] = columns[c].build(rowCount);
+        // the builder keeps no reference to what it handed out
+        columns[c] = null;
+      }
+      return new CSVTable(header, built, rowCount, null);
+    }
+
+    private static ColumnBuilder[] newColumns(int count) {
+      ColumnBuilder[] columns = new ColumnBuilder[count];
+      for (int c = 0; c < count; c++) columns[c] = new ColumnBuilder();
+      return columns;
+    }
+  }
+
+  /** Dictionary codes of one column, and whether every distinct value is a number */
+  private static final class ColumnBuilder {
+    private final Map<String, Integer> codeOf = new HashMap<>();
+    private final List<String> dictionary = new ArrayList<>();
+    private int[] codes = new int[16];
+    private int size;
+    private boolean allLong = true, allDouble = true;
+
+    void add(String value) {
+      Integer code = codeOf.get(value);
+      if (code == null) {
+        code = dictionary.size();
+        codeOf.put(value, code);
+        dictionary.add(value);
+        // every distinct value is checked once
+        if (allLong) allLong = Column.isCanonicalLong(value);
+        if (allDouble) allDouble = Column.isCanonicalDouble(value);
+      }
+      if (size == codes.length) codes = Arrays.copyOf(codes, size * 2);
+      codes[size++] = code;
+    }
+
+    Column build(int rows) {
+      int[] codes = Arrays.copyOf(this.codes, rows);
+      if (allLong && rows > 0) {
+        long[] parsed = new long[dictionary.size()];
+        for (int d = 0; d < parsed.length; d++) parsed[d] = Long.parseLong(dictionary.get(d));
+        long[] values = new long[rows];
+        for (int i = 0; i < rows; i++) values[i] = parsed[codes[i]];
+        return new Column.LongColumn(values);
+      }
+      if (allDouble && rows > 0) {
+        double[] parsed = new double[dictionary.size()];
+        for (int d = 0; d < parsed.length; d++) {
+          parsed[d] = Double.parseDouble(dictionary.get(d));
+        }
+        double[] values = new double[rows];
+        for (int i = 0; i < rows; i++) values[i] = parsed[codes[i]];
+        return new Column.DoubleColumn(values);
+      }
+      return new Column.StringColumn(dictionary.toArray(new String[0]), codes);
+    }
+  }
+}
@@ -0,0 +1,198 @@
+package edu.brown.cs32.student.csv.table;
+
+import java.util.function.IntConsumer;
+
+/** One column of a {@link CSVTable}, holding a cell for every row id */
+public abstract class Column {
+  /**
+   * Size getter
+   *
+   * @return number of rows
+   */
+  public abstract int size();
+
+  /**
+   * Cell getter
+   *
+   * @param row the row id
+   * @return the cell exactly as it was in the file
+   */
+  public abstract String get(int row);
+
+  /**
+   * Find every row whose cell equals a value, the same as String.equals on the cell
+   *
+   * @param value the value to look for
+   * @param rows receives the matching row ids in increasing order
+   */
+  public abstract void matches(String value, IntConsumer rows);
+
+  /**
+   * Bytes getter
+   *
+   * @return heap taken by the column, estimated
+   */
+  public abstract long bytes();
+
+  /** Dictionary encoded text: every distinct value is stored once, rows hold its code */
+  static final class StringColumn extends Column {
+    private final String[] dictionary;
+    private final int[] codes;
+
+    StringColumn(String[] dictionary, int[] codes) {
+      this.dictionary = dictionary;
+      this.codes = codes;
+    }
+
+    String[] dictionary() {
+      return dictionary;
+    }
+
+    int[] codes() {
+      return codes;
+    }
+
+    @Override
+    public int size() {
+      return codes.length;
+    }
+
+    @Override
+    public String get(int row) {
+      return dictionary[codes[row]];
+    }
+
+    @Override
+    public void matches(String value, IntConsumer rows) {
+      int code = -1;
+      for (int d = 0; d < dictionary.length; d++) {
+        if (dictionary[d].equals(value)) {
+          code = d;
+          break;
+        }
+      }
+      if (code < 0) return;
+      for (int i = 0; i < codes.length; i++) {
+        if (codes[i] == code) rows.accept(i);
+      }
+    }
+
+    @Override
+    public long bytes() {
+      // a String and its array header per value, a byte per char of Latin-1 text
+      long bytes = 4L * codes.length + 8L * dictionary.length;
+      for (String value : dictionary) bytes += 40 + value.length();
+      return bytes;
+    }
+  }
+
+  /** Integers whose text is exactly what Long.toString gives back */
+  static final class LongColumn extends Column {
+    private final long[] values;
+
+    LongColumn(long[] values) {
+      this.values = values;
+    }
+
+    long[] values() {
+      return values;
+    }
+
+    @Override
+    public int size() {
+      return values.length;
+    }
+
+    @Override
+    public String get(int row) {
+      return Long.toString(values[row]);
+    }
+
+    @Override
+    public void matches(String value, IntConsumer rows) {
+      // any other spelling of the number is a different string
+      if (!isCanonicalLong(value)) return;
+      long v = Long.parseLong(value);
+      for (int i = 0; i < values.length; i++) {
+        if (values[i] == v) rows.accept(i);
+      }
+    }
+
+    @Override
+    public long bytes() {
+      return 8L * values.length;
+    }
+  }
+
+  /** Decimals whose text is exactly what Double.toString gives back */
+  static final class DoubleColumn extends Column {
+    private final double[] values;
+
+    DoubleColumn(double[] values) {
+      this.values = values;
+    }
+
+    double[] values() {
+      return values;
+    }
+
+    @Override
+    public int size() {
+      return values.length;
+    }
+
+    @Override
+    public String get(int row) {
+      return Double.toString(values[row]);
+    }
+
+    @Override
+    public void matches(String value, IntConsumer rows) {
+      if (!isCanonicalDouble(value)) return;
+      // equal text is equal bits, 0.0 and -0.0 included
+      long bits = Double.doubleToLongBits(Double.parseDouble(value));
+      for (int i = 0; i < values.length; i++) {
+        if (Double.doubleToLongBits(values[i]) == bits) rows.accept(i);
+      }
+    }
+
+    @Override
+    public long bytes() {
+      return 8L * values.length;
+    }
+  }
+
+  /** whether s is a long written the way Long.toString writes it */
+  static boolean isCanonicalLong(String s) {
+    int n = s.length();
+    int start = n > 0 && s.charAt(0) == '-' ? 1 : 0;
+    if (n == start || n - start > 19) return false;
+    for (int i = start; i < n; i++) {
+      char c = s.charAt(i);
+      if (c < '0' || c > '9') return false;
+    }
+    try {
+      return Long.toString(Long.parseLong(s)).equals(s);
+    } catch (NumberFormatException e) {
+      // out of range
+      return false;
+    }
+  }
+
+  /** whether s is a double written the way Double.toString writes it */
+  static boolean isCanonicalDouble(String s) {
+    int n = s.length();
+    if (n == 0) return false;
+    for (int i = 0; i < n; i++) {
+      char c = s.charAt(i);
+      if ((c < '0' || c > '9') && c != '.' && c != '-' && c != 'E') {
+        return s.equals("NaN") || s.equals("Infinity") || s.equals("-Infinity");
+      }
+    }
+    try {
+      return Double.toString(Double.parseDouble(s)).equals(s);
+    } catch (NumberFormatException e) {
+      return false;
+    }
+  }
+}
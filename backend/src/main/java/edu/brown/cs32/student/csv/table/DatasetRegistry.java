@@ -0,0 +1,137 @@
+package edu.brown.cs32.student.csv.table;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Loaded tables by name.
+ *
+ * <p>The names are held in an immutable map that is swapped as a whole on every change, so a reader
+ * takes a snapshot without locking and never waits for a load. A load builds its table aside and
+ * only then publishes it, so readers see the old table or the new one, never a part of one. The
+ * tables together stay within a byte budget: publishing drops the least recently read other tables
+ * until the new one fits, and searches still running on a dropped table keep their own reference.
+ */
+public class DatasetRegistry {
+  /** the name used when a request gives none */
+  public static final String DEFAULT_NAME = "default";
+
+  private final long maxBytes;
+  private final AtomicReference<Map<String, Dataset>> datasets = new AtomicReference<>(Map.of());
+  // orders the reads, a later read has a larger tick
+  private final AtomicLong clock = new AtomicLong();
+
+  /** a published table and when it was last read */
+  private final class Dataset {
+    final CSVTable table;
+    final long bytes;
+    final AtomicLong lastRead = new AtomicLong(clock.incrementAndGet());
+
+    Dataset(CSVTable table) {
+      this.table = table;
+      this.bytes = table.bytes();
+    }
+  }
+
+  /**
+   * Constructor
+   *
+   * @param maxBytes most heap all tables may take together, as estimated by CSVTable.bytes
+   */
+  public DatasetRegistry(long maxBytes) {
+    if (maxBytes <= 0) {
+      throw new IllegalArgumentException("get maxBytes=" + maxBytes + ", should be positive");
+    }
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * Table getter
+   *
+   * @param name name of the dataset
+   * @return its table, null when there is none of that name
+   */
+  public CSVTable get(String name) {
+    Dataset dataset = datasets.get().get(name);
+    if (dataset == null) return null;
+    dataset.lastRead.set(clock.incrementAndGet());
+    return dataset.table;
+  }
+
+  /**
+   * Publish a table under a name, replacing the table of that name
+   *
+   * @param name name of the dataset
+   * @param table the fully built table
+   * @return names of the datasets dropped to stay within the budget
+   * @throws IllegalArgumentException when the table alone is over the budget
+   */
+  public List<String> publish(String name, CSVTable table) {
+    Dataset added = new Dataset(table);
+    if (added.bytes > maxBytes) {
+      throw new IllegalArgumentException(
+          "Dataset " + name + " takes " + added.bytes + " bytes, over the budget of " + maxBytes);
+    }
+    while (true) {
+      Map<String, Dataset> current = datasets.get();
+      Map<String, Dataset> next = new HashMap<>(current);
+      next.put(name, added);
+      long total = 0;
+      for (Dataset dataset : next.values()) total += dataset.bytes;
+      List<String> dropped = new ArrayList<>();
+      while (total > maxBytes) {
+        String oldest = null;
+        for (Map.Entry<String, Dataset> entry : next.entrySet()) {
+          if (entry.getKey().equals(name)) continue;
+          if (oldest == null || entry.getValue().lastRead.get() < next.get(oldest).lastRead.get()) {
+            oldest = entry.getKey();
+          }
+        }
+        total -= next.remove(oldest).bytes;
+        dropped.add(oldest);
+      }
+      if (datasets.compareAndSet(current, Map.copyOf(next))) return dropped;
+    }
+  }
+
+  /**
+   * Drop a dataset
+   *
+   * @param name name of the dataset
+   * @return whether there was one of that name
+   */
+  public boolean remove(String name) {
+    while (true) {
+      Map<String, Dataset> current = datasets.get();
+      if (!current.containsKey(name)) return false;
+      Map<String, Dataset> next = new HashMap<>(current);
+      next.remove(name);
+      if (datasets.compareAndSet(current, Map.copyOf(next))) return true;
+    }
+  }
+
+  /**
+   * Names getter
+   *
+   * @return the names of the datasets now published
+   */
+  public Set<String> names() {
+    return datasets.get().keySet();
+  }
+
+  /**
+   * Bytes getter
+   *
+   * @return heap taken by all published tables, estimated
+   */
+  public long bytes() {
+    long total = 0;
+    for (Dataset dataset : datasets.get().values()) total += dataset.bytes;
+    return total;
+  }
+}
@@ -0,0 +1,261 @@
+package edu.brown.cs32.student.csv.table;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Inverted index of a {@link CSVTable}: every cell value mapped to the sorted ids of the rows that
+ * hold it, per column and across all columns.
+ *
+ * <p>With it a basic query is a lookup instead of a scan over the rows. Text columns keep the rows
+ * of every dictionary code next to each other and find the code with a hash lookup; number columns
+ * keep the row ids sorted by value and find a value by binary search, so no number is turned back
+ * into a String. A lookup across all columns merges the postings of every column. It is built once
+ * when a CSV is loaded and, like the table, never changes afterwards.
+ */
+public final class ValueIndex {
+  private static final int[] NONE = new int[0];
+
+  private final ColumnIndex[] columns;
+  private final Stats stats;
+
+  /**
+   * What building the index took
+   *
+   * @param buildMillis build time in milliseconds
+   * @param bytes heap taken by the index arrays and maps, estimated
+   * @param values distinct values, counted per column
+   */
+  public record Stats(long buildMillis, long bytes, long values) {}
+
+  private ValueIndex(ColumnIndex[] columns, Stats stats) {
+    this.columns = columns;
+    this.stats = stats;
+  }
+
+  /**
+   * Build the index of a table
+   *
+   * @param table the table
+   * @return the index
+   */
+  public static ValueIndex build(CSVTable table) {
+    long start = System.nanoTime();
+    ColumnIndex[] columns = new ColumnIndex[table.columnCount()];
+    long bytes = 0, values = 0;
+    for (int c = 0; c < columns.length; c++) {
+      Column column = table.column(c);
+      if (column instanceof Column.StringColumn text) {
+        columns[c] = new TextIndex(text.dictionary(), text.codes());
+      } else if (column instanceof Column.LongColumn numbers) {
+        columns[c] = new NumberIndex(numbers.values().clone(), false);
+      } else {
+        double[] doubles = ((Column.DoubleColumn) column).values();
+        long[] bits = new long[doubles.length];
+        for (int i = 0; i < bits.length; i++) bits[i] = Double.doubleToLongBits(doubles[i]);
+        columns[c] = new NumberIndex(bits, true);
+      }
+      bytes += columns[c].bytes();
+      values += columns[c].values();
+    }
+    long millis = (System.nanoTime() - start) / 1_000_000;
+    return new ValueIndex(columns, new Stats(millis, bytes, values));
+  }
+
+  /**
+   * Rows holding a value in one column
+   *
+   * @param column the column index
+   * @param value the cell value
+   * @return sorted row ids
+   */
+  public int[] rows(int column, String value) {
+    return columns[column].rows(value);
+  }
+
+  /**
+   * Count rows holding a value in one column, without listing them
+   *
+   * @param column the column index
+   * @param value the cell value
+   * @return the number of rows
+   */
+  public int count(int column, String value) {
+    return columns[column].count(value);
+  }
+
+  /**
+   * Rows holding a value in any column
+   *
+   * @param value the cell value
+   * @return sorted row ids, each once
+   */
+  public int[] rows(String value) {
+    int[][] postings = new int[columns.length][];
+    int total = 0;
+    for (int c = 0; c < columns.length; c++) {
+      postings[c] = columns[c].rows(value);
+      total += postings[c].length;
+    }
+    int[] merged = new int[total];
+    int size = 0;
+    for (int[] rows : postings) {
+      System.arraycopy(rows, 0, merged, size, rows.length);
+      size += rows.length;
+    }
+    Arrays.sort(merged);
+    // drop rows holding the value in more than one column
+    int unique = 0;
+    for (int i = 0; i < size; i++) {
+      if (unique == 0 || merged[unique - 1] != merged[i]) merged[unique++] = merged[i];
+    }
+    return unique == size ? merged : Arrays.copyOf(merged, unique);
+  }
+
+  /**
+   * Stats getter
+   *
+   * @return build time and size
+   */
+  public Stats stats() {
+    return stats;
+  }
+
+  private interface ColumnIndex {
+    int[] rows(String value);
+
+    int count(String value);
+
+    long bytes();
+
+    long values();
+  }
+
+  /** rows grouped by dictionary code: the rows of code d are rows[offsets[d]..offsets[d + 1]) */
+  private static final class TextIndex implements ColumnIndex {
+    private final Map<String, Integer> codeOf;
+    private final int[] offsets;
+    private final int[] rows;
+
+    TextIndex(String[] dictionary, int[] codes) {
+      codeOf = new HashMap<>(dictionary.length * 2);
+      for (int d = 0; d < dictionary.length; d++) codeOf.put(dictionary[d], d);
+      // counting sort by code keeps the rows of a code in order
+      offsets = new int[dictionary.length + 1];
+      for (int code : codes) offsets[code + 1]++;
+      for (int d = 0; d < dictionary.length; d++) offsets[d + 1] += offsets[d];
+      rows = new int[codes.length];
+      int[] next = Arrays.copyOf(offsets, dictionary.length);
+      for (int row = 0; row < codes.length; row++) rows[next[codes[row]]++] = row;
+    }
+
+    @Override
+    public int[] rows(String value) {
+      Integer code = codeOf.get(value);
+      if (code == null) return NONE;
+      return Arrays.copyOfRange(rows, offsets[code], offsets[code + 1]);
+    }
+
+    @Override
+    public int count(String value) {
+      Integer code = codeOf.get(value);
+      return code == null ? 0 : offsets[code + 1] - offsets[code];
+    }
+
+    @Override
+    public long bytes() {
+      // a map entry, its table slot and the boxed code per value; the dictionary is the column's
+      return 56L * codeOf.size() + 4L * offsets.length + 4L * rows.length;
+    }
+
+    @Override
+    public long values() {
+      return codeOf.size();
+    }
+  }
+
+  /** row ids sorted by value, then by id; doubles are compared by their bits */
+  private static final class NumberIndex implements ColumnIndex {
+    private final long[] keys;
+    private final int[] rows;
+    private final boolean doubles;
+    private final long values;
+
+    NumberIndex(long[] byRow, boolean doubles) {
+      this.doubles = doubles;
+      int n = byRow.length;
+      int[] order = new int[n];
+      for (int i = 0; i < n; i++) order[i] = i;
+      sort(order, new int[n], 0, n, byRow);
+      keys = new long[n];
+      long distinct = 0;
+      for (int i = 0; i < n; i++) {
+        keys[i] = byRow[order[i]];
+        if (i == 0 || keys[i] != keys[i - 1]) distinct++;
+      }
+      rows = order;
+      values = distinct;
+    }
+
+    /** stable merge sort of row ids by key */
+    private static void sort(int[] ids, int[] tmp, int from, int to, long[] key) {
+      if (to - from < 2) return;
+      int mid = (from + to) >>> 1;
+      sort(ids, tmp, from, mid, key);
+      sort(ids, tmp, mid, to, key);
+      if (key[ids[mid - 1]] <= key[ids[mid]]) return;
+      System.arraycopy(ids, from, tmp, from, to - from);
+      int i = from, j = mid, k = from;
+      while (i < mid && j < to) ids[k++] = key[tmp[j]] < key[tmp[i]] ? tmp[j++] : tmp[i++];
+      while (i < mid) ids[k++] = tmp[i++];
+      while (j < to) ids[k++] = tmp[j++];
+    }
+
+    @Override
+    public int[] rows(String value) {
+      int[] range = range(value);
+      return range == null ? NONE : Arrays.copyOfRange(rows, range[0], range[1]);
+    }
+
+    @Override
+    public int count(String value) {
+      int[] range = range(value);
+      return range == null ? 0 : range[1] - range[0];
+    }
+
+    /** {from, to} of the rows holding value, null when the value cannot be in this column */
+    private int[] range(String value) {
+      long key;
+      if (doubles) {
+        if (!Column.isCanonicalDouble(value)) return null;
+        key = Double.doubleToLongBits(Double.parseDouble(value));
+      } else {
+        if (!Column.isCanonicalLong(value)) return null;
+        key = Long.parseLong(value);
+      }
+      return new int[] {bound(key, false), bound(key, true)};
+    }
+
+    /** first position whose key is at least key, or above key when inclusive */
+    private int bound(long key, boolean inclusive) {
+      int lo = 0, hi = keys.length;
+      while (lo < hi) {
+        int mid = (lo + hi) >>> 1;
+        if (keys[mid] < key || (inclusive && keys[mid] == key)) lo = mid + 1;
+        else hi = mid;
+      }
+      return lo;
+    }
+
+    @Override
+    public long bytes() {
+      return 8L * keys.length + 4L * rows.length;
+    }
+
+    @Override
+    public long values() {
+      return values;
+    }
+  }
+}
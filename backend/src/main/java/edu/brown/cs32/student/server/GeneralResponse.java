@@ -1,8 +1,6 @@
 package edu.brown.cs32.student.server;
 
-import com.squareup.moshi.Moshi;
-import com.squareup.moshi.Types;
-import java.lang.reflect.Type;
+import edu.brown.cs32.student.server.utils.Codecs;
 import java.util.Map;
 import okio.BufferedSource;
 
@@ -16,9 +14,7 @@ public record GeneralResponse(Map<String, Object> responseMap) {
    */
   public String serialize() throws Exception {
     try {
-      Moshi moshi = new Moshi.Builder().build();
-      Type type = Types.newParameterizedType(Map.class, String.class, Object.class);
-      return moshi.adapter(type).toJson(responseMap);
+      return Codecs.MAP.toJson(responseMap);
     } catch (Exception e) {
 
       e.printStackTrace();
@@ -35,9 +31,7 @@ public record GeneralResponse(Map<String, Object> responseMap) {
    */
   public GeneralResponse deserialize(BufferedSource buffer) throws Exception {
     try {
-      Moshi moshi = new Moshi.Builder().build();
-      Type type = Types.newParameterizedType(Map.class, String.class, Object.class);
-      Map<String, Object> response = (Map<String, Object>) moshi.adapter(type).fromJson(buffer);
+      Map<String, Object> response = Codecs.MAP.fromJson(buffer);
       return new GeneralResponse(response);
     } catch (Exception e) {
       e.printStackTrace();
@@ -1,25 +1,67 @@
 package edu.brown.cs32.student.server;
 
-import static spark.Spark.after;
+import static spark.Spark.before;
 
 import edu.brown.cs32.student.server.filter.FilterHandler;
+import edu.brown.cs32.student.server.filter.GeoFilter;
+import edu.brown.cs32.student.server.filter.ParallelFilterRequestConverter;
+import edu.brown.cs32.student.server.filter.RedliningData;
+import edu.brown.cs32.student.server.filter.TileHandler;
 import edu.brown.cs32.student.server.note.NoteHandler;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ForkJoinPool;
 import spark.Spark;
 
 public class Server {
   public static void main(String[] args) {
     Spark.port(3232);
-    after(
+    // set before the route runs, some routes commit the response by writing to it directly
+    before(
         (request, response) -> {
           response.header("Access-Control-Allow-Origin", "*");
           response.header("Access-Control-Allow-Methods", "*");
         });
 
     // Setting up the handler for the GET /order endpoint
-    Spark.get("filter", new FilterHandler());
+    RedliningData redliningData = null;
+    try {
+      long start = System.nanoTime();
+      redliningData = RedliningData.load(FilterHandler.PATH);
+      // heap in use now, with the features, index and encodings kept; no JVM counter is reset
+      long heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+      System.out.println(
+          "Loaded "
+              + redliningData.geoData().features().size()
+              + " features from "
+              + FilterHandler.PATH
+              + " in "
+              + (System.nanoTime() - start) / 1_000_000
+              + " ms, heap in use "
+              + heap / (1024 * 1024)
+              + " MB");
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+    Spark.get("filter", new FilterHandler(redliningData, filter(redliningData)));
+    Spark.get("tiles/:z/:x/:y", new TileHandler(redliningData, 64L * 1024 * 1024));
     Spark.get("note", new NoteHandler());
     Spark.init();
     Spark.awaitInitialization();
     System.out.println("Server started on localhost:3232.");
   }
+
+  /**
+   * The R-tree by default; with -Dfilter.parallelism=N its candidates are checked on N threads, in
+   * chunks of -Dfilter.threshold features, when a query has more than that many
+   */
+  private static GeoFilter filter(RedliningData data) {
+    if (data == null) return null;
+    int parallelism = Integer.getInteger("filter.parallelism", 0);
+    if (parallelism <= 0) return data.index();
+    int threshold =
+        Integer.getInteger("filter.threshold", ParallelFilterRequestConverter.DEFAULT_THRESHOLD);
+    return new ParallelFilterRequestConverter(
+        data.index(), new ForkJoinPool(parallelism), threshold);
+  }
 }
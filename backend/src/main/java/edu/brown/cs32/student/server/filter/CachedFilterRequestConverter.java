@@ -1,63 +1,145 @@
 package edu.brown.cs32.student.server.filter;
 
+import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import edu.brown.cs32.student.server.utils.Data;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Caches filter results and answers boxes lying inside a cached box from that box's features.
+ *
+ * <p>Both filter modes are monotonic: whatever is contained in (or intersects) a box is contained
+ * in (or intersects) every box around it. So when a request misses but a cached request of the same
+ * mode covers it, the answer is the cached features filtered again, which is the smaller scan.
+ * Entries are weighed by the vertices of their features, which vary by orders of magnitude from one
+ * polygon to the next, so the cache is bounded by the size of what it holds rather than by how many
+ * boxes or features it has seen.
+ */
 public class CachedFilterRequestConverter implements GeoFilter {
-  private final FilterRequestConverter wrappedConverter;
+  private final GeoFilter wrappedConverter;
 
-  private final LoadingCache<Data.FilterRequest, Data.GeoData> cache;
+  private final Cache<Data.FilterRequest.Key, Data.GeoData> cache;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong partialHits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+
+  /**
+   * Lookup counters
+   *
+   * @param hits requests found in the cache
+   * @param partialHits requests filtered from a cached box around them
+   * @param misses requests sent to the wrapped filter
+   */
+  public record Stats(long hits, long partialHits, long misses) {}
 
   /**
    * Cache getter
    *
    * @return local cache
    */
-  public LoadingCache<Data.FilterRequest, Data.GeoData> getCache() {
+  public Cache<Data.FilterRequest.Key, Data.GeoData> getCache() {
     return cache;
   }
+
+  /**
+   * Stats getter
+   *
+   * @return the lookup counters so far
+   */
+  public Stats stats() {
+    return new Stats(hits.get(), partialHits.get(), misses.get());
+  }
+
   /**
    * Constructor
    *
-   * @param converter
-   * @param cacheSize
-   * @param cacheTime
+   * @param converter the filter over the full data
+   * @param maxVertices most vertices held by all cached results together
+   * @param cacheTime seconds a result is kept
    */
-  public CachedFilterRequestConverter(
-      FilterRequestConverter converter, int cacheSize, int cacheTime) {
+  public CachedFilterRequestConverter(GeoFilter converter, long maxVertices, int cacheTime) {
     this.wrappedConverter = converter;
     this.cache =
         CacheBuilder.newBuilder()
-            // How many entries maximum in the cache?
-            .maximumSize(cacheSize)
+            // How many vertices maximum in the cache?
+            .maximumWeight(maxVertices)
+            .weigher((Data.FilterRequest.Key key, Data.GeoData value) -> weight(value))
             // How long should entries remain in the cache?
             .expireAfterWrite(cacheTime, TimeUnit.SECONDS)
             // Keep statistical info around for profiling purposes
             .recordStats()
-            .build(
-                new CacheLoader<Data.FilterRequest, Data.GeoData>() {
-                  @Override
-                  public Data.GeoData load(Data.FilterRequest key) {
-                    // If this isn't yet present in the cache, load it:
-                    return wrappedConverter.convertFilterRequest(key);
-                  }
-                });
+            .build();
+  }
+
+  /** vertices of every feature, and one per feature and per result so none is free */
+  private static int weight(Data.GeoData value) {
+    long weight = 1;
+    for (Data.GeoFeature feature : value.features()) {
+      weight++;
+      Data.GeoGeometry geometry = feature.geometry();
+      if (geometry != null && geometry.coordinates() != null) {
+        weight += geometry.coordinates().vertexCount();
+      }
+    }
+    return (int) Math.min(Integer.MAX_VALUE, weight);
   }
 
   /**
-   * Find box in the cache and get the geoData, if not found, load into the cache
+   * Find box in the cache and get the geoData, if not found, filter it from the smallest cached box
+   * around it or from the full data, and put it into the cache
    *
    * @param request
    * @return geoData
-   * @throws Exception
    */
   @Override
   public Data.GeoData convertFilterRequest(Data.FilterRequest request) {
-    Data.GeoData result = cache.getUnchecked(request);
-    // System.out.println(cache.stats());
+    Data.FilterRequest.Key key = request.key();
+    Data.GeoData result = cache.getIfPresent(key);
+    if (result != null) {
+      hits.incrementAndGet();
+      return result;
+    }
+    boolean[] loaded = {false};
+    try {
+      result =
+          cache.get(
+              key,
+              () -> {
+                loaded[0] = true;
+                return load(request);
+              });
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      if (e.getCause() instanceof RuntimeException cause) throw cause;
+      throw new IllegalStateException(e.getCause());
+    }
+    // another thread loaded the same box meanwhile
+    if (!loaded[0]) hits.incrementAndGet();
     return result;
   }
+
+  private Data.GeoData load(Data.FilterRequest request) {
+    Data.FilterRequest.Key key = request.key();
+    Data.GeoData superset = null;
+    for (Map.Entry<Data.FilterRequest.Key, Data.GeoData> entry : cache.asMap().entrySet()) {
+      if (entry.getKey().covers(key)
+          && (superset == null
+              || entry.getValue().features().size() < superset.features().size())) {
+        superset = entry.getValue();
+      }
+    }
+    if (superset == null) {
+      misses.incrementAndGet();
+      return wrappedConverter.convertFilterRequest(request);
+    }
+    partialHits.incrementAndGet();
+    List<Data.GeoFeature> features = superset.features();
+    return new Data.GeoData(
+        superset.type(), FilterRequestConverter.filter(features, 0, features.size(), request));
+  }
 }
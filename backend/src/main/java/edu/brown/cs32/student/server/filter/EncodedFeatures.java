@@ -0,0 +1,87 @@
+package edu.brown.cs32.student.server.filter;
+
+import edu.brown.cs32.student.server.utils.Codecs;
+import edu.brown.cs32.student.server.utils.Data;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The Json of every loaded feature, encoded once as UTF-8 bytes.
+ *
+ * <p>A filter response is the success envelope around the selected features, so it is written by
+ * copying their pre-encoded slices to the output instead of serializing the coordinates again on
+ * every request. Features are looked up by identity, which is what every GeoFilter hands back.
+ */
+public class EncodedFeatures {
+  private static final byte[] PREFIX =
+      "{\"result\":\"success\",\"data\":{\"type\":".getBytes(StandardCharsets.UTF_8);
+  private static final byte[] FEATURES = ",\"features\":[".getBytes(StandardCharsets.UTF_8);
+  private static final byte[] SUFFIX = "]}}".getBytes(StandardCharsets.UTF_8);
+
+  private final Map<Data.GeoFeature, byte[]> encoded;
+
+  /**
+   * Constructor, encodes every feature
+   *
+   * @param data the loaded GeoData
+   */
+  public EncodedFeatures(Data.GeoData data) {
+    this.encoded = new IdentityHashMap<>(data.features().size() * 2);
+    for (Data.GeoFeature feature : data.features()) {
+      encoded.put(feature, encode(feature));
+    }
+  }
+
+  private byte[] encode(Data.GeoFeature feature) {
+    return Codecs.GEO_FEATURE.toJson(feature).getBytes(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * The Json of a feature
+   *
+   * @param feature a loaded feature, or any other feature which is then encoded on the spot
+   * @return UTF-8 bytes of the feature Json, not to be modified
+   */
+  public byte[] bytes(Data.GeoFeature feature) {
+    byte[] bytes = encoded.get(feature);
+    return bytes != null ? bytes : encode(feature);
+  }
+
+  /**
+   * Write {"result":"success","data":{...}} for the filtered data
+   *
+   * @param out where the response goes
+   * @param data filtered GeoData whose features came from the loaded data
+   * @throws IOException when the output fails
+   */
+  public void writeSuccess(OutputStream out, Data.GeoData data) throws IOException {
+    List<byte[]> slices = new ArrayList<>(data.features().size());
+    for (Data.GeoFeature feature : data.features()) slices.add(bytes(feature));
+    writeSuccess(out, data.type(), slices);
+  }
+
+  /**
+   * Write {"result":"success","data":{...}} around encoded features
+   *
+   * @param out where the response goes
+   * @param type type of the feature collection
+   * @param features Json of every feature
+   * @throws IOException when the output fails
+   */
+  public static void writeSuccess(OutputStream out, String type, List<byte[]> features)
+      throws IOException {
+    out.write(PREFIX);
+    out.write(Codecs.STRING.toJson(type).getBytes(StandardCharsets.UTF_8));
+    out.write(FEATURES);
+    for (int i = 0; i < features.size(); i++) {
+      if (i > 0) out.write(',');
+      out.write(features.get(i));
+    }
+    out.write(SUFFIX);
+  }
+}
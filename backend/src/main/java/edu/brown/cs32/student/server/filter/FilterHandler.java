@@ -21,18 +21,45 @@ import spark.utils.StringUtils;
  * complex, but this should serve as a reference.
  */
 public class FilterHandler implements Route {
-  private Data.GeoData geoData;
+  /** where the redlining data is loaded from */
+  public static final String PATH = "data/fullDownload.json";
 
-  private final String PATH = "data/fullDownload.json";
   private GeoFilter converter;
+  private EncodedFeatures encodedFeatures;
 
+  /** Constructor, loads the data from PATH */
   public FilterHandler() {
+    this(loadDefault());
+  }
+
+  /**
+   * Constructor over already loaded data
+   *
+   * @param data the loaded data, or null when loading failed
+   */
+  public FilterHandler(RedliningData data) {
+    this(data, data == null ? null : data.index());
+  }
+
+  /**
+   * Constructor over already loaded data and a chosen filter
+   *
+   * @param data the loaded data, or null when loading failed
+   * @param filter the filter over data that answers requests
+   */
+  public FilterHandler(RedliningData data, GeoFilter filter) {
+    if (data == null) return;
+    // vertices of the cached answers, a few times the whole redlining data
+    this.converter = new CachedFilterRequestConverter(filter, 5_000_000, 60);
+    this.encodedFeatures = data.encodedFeatures();
+  }
+
+  private static RedliningData loadDefault() {
     try {
-      this.geoData = JsonReader.readFromFileToGeo(PATH);
-      this.converter =
-          new CachedFilterRequestConverter(new FilterRequestConverter(geoData), 10, 60);
+      return RedliningData.load(PATH);
     } catch (Exception e) {
       e.printStackTrace();
+      return null;
     }
   }
 
@@ -55,9 +82,9 @@ public class FilterHandler implements Route {
       FilterRequest filterRequest = JsonReader.readFilterFromString(filter);
 
       Data.GeoData filteredResult = converter.convertFilterRequest(filterRequest);
-      result.put("result", "success");
-      result.put("data", filteredResult);
-      return new GeneralResponse(result).serialize();
+      // the features are already encoded, copy them straight to the client
+      encodedFeatures.writeSuccess(response.raw().getOutputStream(), filteredResult);
+      return "";
     } catch (MissingArgException e) {
       result.put("result", "error_bad_request");
       result.put("data", e.getMessage());
@@ -71,4 +98,3 @@ public class FilterHandler implements Route {
     return new GeneralResponse(result).serialize();
   }
 }
-
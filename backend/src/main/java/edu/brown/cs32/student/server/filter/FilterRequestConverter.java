@@ -1,6 +1,7 @@
 package edu.brown.cs32.student.server.filter;
 
 import edu.brown.cs32.student.server.utils.Data;
+import edu.brown.cs32.student.server.utils.GeoCoordinates;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -14,32 +15,82 @@ public class FilterRequestConverter implements GeoFilter {
   // get filer request transfer to geodata
   @Override
   public Data.GeoData convertFilterRequest(Data.FilterRequest request) {
+    List<Data.GeoFeature> featureList = geoData.features();
+    return new Data.GeoData(
+        "FeatureCollection", filter(featureList, 0, featureList.size(), request));
+  }
+
+  /**
+   * Linear scan over a range of features
+   *
+   * @param features the features
+   * @param from first index, inclusive
+   * @param to last index, exclusive
+   * @param request the bounding box and mode
+   * @return the matching features, in order
+   */
+  static List<Data.GeoFeature> filter(
+      List<Data.GeoFeature> features, int from, int to, Data.FilterRequest request) {
     List<Data.GeoFeature> retFeatures = new ArrayList<>();
-    Double minLat = request.minLat(),
+    double minLat = request.minLat(),
         maxLat = request.maxLat(),
         minLon = request.minLon(),
         maxLon = request.maxLon();
-    List<Data.GeoFeature> featureList = geoData.features();
-    for (Data.GeoFeature feature : featureList) {
-      Data.GeoGeometry geometry = feature.geometry();
-      boolean isValid = true;
-      if (geometry != null) {
-        List<List<List<List<Double>>>> coordinates = geometry.coordinates();
-        if (coordinates != null) {
-          for (List<Double> coordinate : coordinates.get(0).get(0)) {
-            double lon = coordinate.get(0);
-            double lat = coordinate.get(1);
-            if (lat < minLat || lat > maxLat || lon < minLon || lon > maxLon) {
-              isValid = false;
-              break;
-            }
-          }
-        }
-        if (isValid) {
-          retFeatures.add(feature);
-        }
+    boolean intersects = request.isIntersects();
+    for (int i = from; i < to; i++) {
+      Data.GeoFeature feature = features.get(i);
+      if (matches(feature, intersects, minLon, minLat, maxLon, maxLat)) {
+        retFeatures.add(feature);
       }
     }
-    return new Data.GeoData("FeatureCollection", retFeatures);
+    return retFeatures;
+  }
+
+  /**
+   * Linear scan over a range of chosen features
+   *
+   * @param features the features
+   * @param indices indices of the features to check
+   * @param from first position in indices, inclusive
+   * @param to last position in indices, exclusive
+   * @param request the bounding box and mode
+   * @return the matching features, in the order of indices
+   */
+  static List<Data.GeoFeature> filter(
+      List<Data.GeoFeature> features, int[] indices, int from, int to, Data.FilterRequest request) {
+    List<Data.GeoFeature> retFeatures = new ArrayList<>();
+    double minLat = request.minLat(),
+        maxLat = request.maxLat(),
+        minLon = request.minLon(),
+        maxLon = request.maxLon();
+    boolean intersects = request.isIntersects();
+    for (int k = from; k < to; k++) {
+      Data.GeoFeature feature = features.get(indices[k]);
+      if (matches(feature, intersects, minLon, minLat, maxLon, maxLat)) {
+        retFeatures.add(feature);
+      }
+    }
+    return retFeatures;
+  }
+
+  /** whether a box returns a feature, in the mode of the request */
+  private static boolean matches(
+      Data.GeoFeature feature,
+      boolean intersects,
+      double minLon,
+      double minLat,
+      double maxLon,
+      double maxLat) {
+    Data.GeoGeometry geometry = feature.geometry();
+    if (geometry == null) return false;
+    GeoCoordinates coordinates = geometry.coordinates();
+    // the envelopes are computed at load time, so every feature is a constant time check
+    if (intersects) {
+      Data.Envelope envelope = coordinates == null ? null : coordinates.envelope();
+      return envelope != null && envelope.intersects(minLon, minLat, maxLon, maxLat);
+    }
+    // a missing outer ring has no vertex outside the box
+    Data.Envelope ring = coordinates == null ? null : coordinates.firstRingEnvelope();
+    return ring == null || ring.within(minLon, minLat, maxLon, maxLat);
   }
 }
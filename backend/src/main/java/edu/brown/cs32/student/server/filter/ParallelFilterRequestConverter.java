@@ -0,0 +1,123 @@
+package edu.brown.cs32.student.server.filter;
+
+import edu.brown.cs32.student.server.utils.Data;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The R-tree lookup of {@link RTreeGeoFilter}, with its candidates checked on a ForkJoin pool.
+ *
+ * <p>The tree gives the features under the leaves that reach into the request box, and only those
+ * are checked. A query with no more than threshold of them is checked on the calling thread without
+ * touching the pool, so a small box costs what it costs the tree. Otherwise the candidates are cut
+ * into chunks of at most threshold, the chunks are checked by forked tasks into their own result
+ * slots, and the slots are concatenated left to right once all are done, so the features keep their
+ * original order.
+ */
+public class ParallelFilterRequestConverter implements GeoFilter {
+  /** candidates per chunk when none is given */
+  public static final int DEFAULT_THRESHOLD = 2048;
+
+  private final RTreeGeoFilter index;
+  private final ForkJoinPool pool;
+  private final int threshold;
+
+  /**
+   * Constructor, indexing the data
+   *
+   * @param data the full GeoData
+   * @param parallelism number of worker threads
+   * @param threshold most candidates checked by one task
+   */
+  public ParallelFilterRequestConverter(Data.GeoData data, int parallelism, int threshold) {
+    this(new RTreeGeoFilter(data), new ForkJoinPool(parallelism), threshold);
+  }
+
+  /**
+   * Constructor over an existing index and pool
+   *
+   * @param index the R-tree of the full GeoData
+   * @param pool where the chunks run
+   * @param threshold most candidates checked by one task
+   */
+  public ParallelFilterRequestConverter(RTreeGeoFilter index, ForkJoinPool pool, int threshold) {
+    if (threshold < 1) {
+      throw new IllegalArgumentException("get threshold=" + threshold + ", should be positive");
+    }
+    this.index = index;
+    this.pool = pool;
+    this.threshold = threshold;
+  }
+
+  /**
+   * Pool getter
+   *
+   * @return the pool the chunks run on
+   */
+  public ForkJoinPool getPool() {
+    return pool;
+  }
+
+  @Override
+  public Data.GeoData convertFilterRequest(Data.FilterRequest request) {
+    List<Data.GeoFeature> features = index.features();
+    int[] candidates =
+        index.candidates(request.minLon(), request.minLat(), request.maxLon(), request.maxLat());
+    int n = candidates.length;
+    if (n <= threshold) {
+      return new Data.GeoData(
+          "FeatureCollection", FilterRequestConverter.filter(features, candidates, 0, n, request));
+    }
+    List<List<Data.GeoFeature>> parts = new ArrayList<>();
+    for (int from = 0; from < n; from += threshold) parts.add(null);
+    pool.invoke(new Chunks(features, candidates, request, parts, 0, parts.size()));
+
+    int size = 0;
+    for (List<Data.GeoFeature> part : parts) size += part.size();
+    List<Data.GeoFeature> retFeatures = new ArrayList<>(size);
+    for (List<Data.GeoFeature> part : parts) retFeatures.addAll(part);
+    return new Data.GeoData("FeatureCollection", retFeatures);
+  }
+
+  /** Check chunks [first, last), forking halves until a single chunk is left */
+  private class Chunks extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final List<Data.GeoFeature> features;
+    private final int[] candidates;
+    private final Data.FilterRequest request;
+    private final List<List<Data.GeoFeature>> parts;
+    private final int first, last;
+
+    Chunks(
+        List<Data.GeoFeature> features,
+        int[] candidates,
+        Data.FilterRequest request,
+        List<List<Data.GeoFeature>> parts,
+        int first,
+        int last) {
+      this.features = features;
+      this.candidates = candidates;
+      this.request = request;
+      this.parts = parts;
+      this.first = first;
+      this.last = last;
+    }
+
+    @Override
+    protected void compute() {
+      if (last - first == 1) {
+        int from = first * threshold;
+        int to = Math.min(candidates.length, from + threshold);
+        parts.set(first, FilterRequestConverter.filter(features, candidates, from, to, request));
+        return;
+      }
+      int mid = (first + last) >>> 1;
+      invokeAll(
+          new Chunks(features, candidates, request, parts, first, mid),
+          new Chunks(features, candidates, request, parts, mid, last));
+    }
+  }
+}
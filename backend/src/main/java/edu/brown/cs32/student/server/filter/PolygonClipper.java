@@ -0,0 +1,146 @@
+package edu.brown.cs32.student.server.filter;
+
+import edu.brown.cs32.student.server.utils.GeoCoordinates;
+import java.util.Arrays;
+
+/** Clip MultiPolygon coordinates to a lon/lat box with the Sutherland-Hodgman algorithm */
+final class PolygonClipper {
+  private PolygonClipper() {}
+
+  /**
+   * Clip every ring to a box
+   *
+   * @return the same coordinates when every vertex is inside the box, null when nothing is left,
+   *     otherwise the clipped coordinates. A polygon whose outer ring is clipped away is dropped
+   *     together with its holes.
+   */
+  static GeoCoordinates clip(
+      GeoCoordinates coordinates, double west, double south, double east, double north) {
+    if (inside(coordinates, west, south, east, north)) return coordinates;
+
+    double[] ordinates = new double[64];
+    int[] ringStarts = new int[8];
+    int[] polygonStarts = new int[4];
+    int vertices = 0, rings = 0, polygons = 0;
+    double[] in = new double[64], out = new double[64];
+
+    for (int p = 0; p < coordinates.polygonCount(); p++) {
+      int polygonStart = rings;
+      for (int r = 0; r < coordinates.ringCount(p); r++) {
+        int n = coordinates.vertexCount(p, r);
+        if (2 * n > in.length) {
+          in = new double[2 * n];
+          out = new double[2 * n];
+        }
+        for (int v = 0; v < n; v++) {
+          in[2 * v] = coordinates.lon(p, r, v);
+          in[2 * v + 1] = coordinates.lat(p, r, v);
+        }
+        // work on the open ring
+        if (n > 1 && in[0] == in[2 * n - 2] && in[1] == in[2 * n - 1]) n--;
+
+        double[][] buffers = {in, out};
+        int current = 0;
+        // {axis, boundary, keep side} for west, east, south, north
+        double[][] edges = {{0, west, 1}, {0, east, -1}, {1, south, 1}, {1, north, -1}};
+        for (double[] edge : edges) {
+          double[] src = buffers[current], dst = buffers[1 - current];
+          // clipping against one edge at most doubles the vertices
+          if (dst.length < 4 * n + 2) {
+            dst = Arrays.copyOf(dst, 4 * n + 2);
+            buffers[1 - current] = dst;
+          }
+          n = clipEdge(src, n, dst, (int) edge[0], edge[1], edge[2]);
+          current = 1 - current;
+        }
+        in = buffers[current];
+        out = buffers[1 - current];
+
+        if (n < 3) {
+          // without its outer ring the polygon is gone, holes included
+          if (r == 0) break;
+          continue;
+        }
+        if (rings + 2 >= ringStarts.length) {
+          ringStarts = Arrays.copyOf(ringStarts, ringStarts.length * 2);
+        }
+        if (2 * (vertices + n + 1) > ordinates.length) {
+          ordinates =
+              Arrays.copyOf(ordinates, Math.max(ordinates.length * 2, 2 * (vertices + n + 1)));
+        }
+        ringStarts[rings++] = vertices;
+        System.arraycopy(in, 0, ordinates, 2 * vertices, 2 * n);
+        vertices += n;
+        // close the ring again
+        ordinates[2 * vertices] = in[0];
+        ordinates[2 * vertices + 1] = in[1];
+        vertices++;
+      }
+      // the outer ring was clipped away
+      if (rings == polygonStart) continue;
+      if (polygons + 2 >= polygonStarts.length) {
+        polygonStarts = Arrays.copyOf(polygonStarts, polygonStarts.length * 2);
+      }
+      polygonStarts[polygons++] = polygonStart;
+    }
+    if (polygons == 0) return null;
+
+    polygonStarts[polygons] = rings;
+    ringStarts[rings] = vertices;
+    return new GeoCoordinates(
+        Arrays.copyOf(ordinates, 2 * vertices),
+        Arrays.copyOf(ringStarts, rings + 1),
+        Arrays.copyOf(polygonStarts, polygons + 1));
+  }
+
+  private static boolean inside(
+      GeoCoordinates coordinates, double west, double south, double east, double north) {
+    for (int p = 0; p < coordinates.polygonCount(); p++) {
+      for (int r = 0; r < coordinates.ringCount(p); r++) {
+        for (int v = 0; v < coordinates.vertexCount(p, r); v++) {
+          double lon = coordinates.lon(p, r, v), lat = coordinates.lat(p, r, v);
+          if (lon < west || lon > east || lat < south || lat > north) return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Clip an open ring against one axis-aligned boundary
+   *
+   * @param src interleaved lon, lat of the ring
+   * @param n vertices in src
+   * @param dst receives the clipped ring
+   * @param axis 0 for longitude, 1 for latitude
+   * @param boundary the boundary value
+   * @param side 1 to keep values above the boundary, -1 to keep values below
+   * @return vertices in dst
+   */
+  private static int clipEdge(
+      double[] src, int n, double[] dst, int axis, double boundary, double side) {
+    int count = 0;
+    for (int i = 0; i < n; i++) {
+      int prev = i == 0 ? n - 1 : i - 1;
+      double curLon = src[2 * i], curLat = src[2 * i + 1];
+      double preLon = src[2 * prev], preLat = src[2 * prev + 1];
+      double cur = axis == 0 ? curLon : curLat;
+      double pre = axis == 0 ? preLon : preLat;
+      boolean curIn = (cur - boundary) * side >= 0;
+      boolean preIn = (pre - boundary) * side >= 0;
+      if (curIn != preIn) {
+        // where the edge crosses the boundary
+        double t = (boundary - pre) / (cur - pre);
+        dst[2 * count] = axis == 0 ? boundary : preLon + t * (curLon - preLon);
+        dst[2 * count + 1] = axis == 0 ? preLat + t * (curLat - preLat) : boundary;
+        count++;
+      }
+      if (curIn) {
+        dst[2 * count] = curLon;
+        dst[2 * count + 1] = curLat;
+        count++;
+      }
+    }
+    return count;
+  }
+}
@@ -0,0 +1,319 @@
+package edu.brown.cs32.student.server.filter;
+
+import edu.brown.cs32.student.server.utils.Data;
+import edu.brown.cs32.student.server.utils.GeoCoordinates;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * GeoFilter backed by a Sort-Tile-Recursive packed R-tree.
+ *
+ * <p>The tree is built once from the loaded GeoData over the envelope of every feature's whole
+ * geometry. For "contained" requests a leaf then checks the envelope of the ring the linear {@link
+ * FilterRequestConverter} checks (the outer ring of the first polygon), for "intersects" requests
+ * the whole envelope, so a feature is returned exactly when the linear scan returns it. A query
+ * only visits nodes whose box intersects the request box, and adds whole subtrees without further
+ * checks once a node lies inside the request box.
+ */
+public class RTreeGeoFilter implements GeoFilter {
+  private static final int NODE_CAPACITY = 16;
+
+  private final List<Data.GeoFeature> features;
+  // features without a first ring are contained in every box, same as the linear scan
+  private final int[] alwaysIncluded;
+  // envelope of the whole geometry, the tree is built over these
+  private final double[] minLons, minLats, maxLons, maxLats;
+  // envelope of the outer ring of the first polygon, checked for containment
+  private final double[] ringMinLons, ringMinLats, ringMaxLons, ringMaxLats;
+  private final Node root;
+
+  /** A tree node; leaves hold feature indices, inner nodes hold children. */
+  private static final class Node {
+    double minLon = Double.POSITIVE_INFINITY, minLat = Double.POSITIVE_INFINITY;
+    double maxLon = Double.NEGATIVE_INFINITY, maxLat = Double.NEGATIVE_INFINITY;
+    Node[] children;
+    int[] entries;
+    // number of features under this node
+    int size;
+  }
+
+  /**
+   * Constructor, builds the index
+   *
+   * @param data the full GeoData to index
+   */
+  public RTreeGeoFilter(Data.GeoData data) {
+    this.features = data.features();
+    int n = features.size();
+    minLons = new double[n];
+    minLats = new double[n];
+    maxLons = new double[n];
+    maxLats = new double[n];
+    ringMinLons = new double[n];
+    ringMinLats = new double[n];
+    ringMaxLons = new double[n];
+    ringMaxLats = new double[n];
+
+    List<Integer> indexed = new ArrayList<>();
+    List<Integer> always = new ArrayList<>();
+    for (int i = 0; i < n; i++) {
+      Data.GeoGeometry geometry = features.get(i).geometry();
+      // features without geometry are never returned
+      if (geometry == null) continue;
+      GeoCoordinates coordinates = geometry.coordinates();
+      Data.Envelope ring = coordinates == null ? null : coordinates.firstRingEnvelope();
+      if (ring == null) {
+        always.add(i);
+        continue;
+      }
+      ringMinLons[i] = ring.minLon();
+      ringMinLats[i] = ring.minLat();
+      ringMaxLons[i] = ring.maxLon();
+      ringMaxLats[i] = ring.maxLat();
+      Data.Envelope envelope = coordinates.envelope();
+      minLons[i] = envelope.minLon();
+      minLats[i] = envelope.minLat();
+      maxLons[i] = envelope.maxLon();
+      maxLats[i] = envelope.maxLat();
+      indexed.add(i);
+    }
+    this.alwaysIncluded = always.stream().mapToInt(Integer::intValue).toArray();
+    this.root = build(indexed.stream().mapToInt(Integer::intValue).toArray());
+  }
+
+  /** Sort-Tile-Recursive bulk loading */
+  private Node build(int[] indices) {
+    List<Node> level = new ArrayList<>();
+    Integer[] sorted = Arrays.stream(indices).boxed().toArray(Integer[]::new);
+    for (Integer[] slice : tile(sorted, i -> centerLon(i), i -> centerLat(i))) {
+      Node leaf = new Node();
+      leaf.entries = Arrays.stream(slice).mapToInt(Integer::intValue).toArray();
+      for (int i : leaf.entries) {
+        expand(leaf, minLons[i], minLats[i], maxLons[i], maxLats[i]);
+      }
+      leaf.size = leaf.entries.length;
+      level.add(leaf);
+    }
+    while (level.size() > 1) {
+      Node[] nodes = level.toArray(new Node[0]);
+      level = new ArrayList<>();
+      for (Node[] slice :
+          tile(
+              nodes,
+              node -> (node.minLon + node.maxLon) / 2,
+              node -> (node.minLat + node.maxLat) / 2)) {
+        Node parent = new Node();
+        parent.children = slice;
+        for (Node child : slice) {
+          expand(parent, child.minLon, child.minLat, child.maxLon, child.maxLat);
+          parent.size += child.size;
+        }
+        level.add(parent);
+      }
+    }
+    return level.isEmpty() ? null : level.get(0);
+  }
+
+  private interface Center<T> {
+    double of(T item);
+  }
+
+  /**
+   * Split items into groups of at most NODE_CAPACITY: sort by x, cut into vertical slabs, then sort
+   * every slab by y and cut it into runs.
+   */
+  private static <T> List<T[]> tile(T[] items, Center<T> x, Center<T> y) {
+    List<T[]> groups = new ArrayList<>();
+    int n = items.length;
+    if (n == 0) return groups;
+    int leafCount = (n + NODE_CAPACITY - 1) / NODE_CAPACITY;
+    int slabCount = (int) Math.ceil(Math.sqrt(leafCount));
+    int slabSize = slabCount * NODE_CAPACITY;
+    Arrays.sort(items, Comparator.comparingDouble(x::of));
+    for (int start = 0; start < n; start += slabSize) {
+      T[] slab = Arrays.copyOfRange(items, start, Math.min(n, start + slabSize));
+      Arrays.sort(slab, Comparator.comparingDouble(y::of));
+      for (int s = 0; s < slab.length; s += NODE_CAPACITY) {
+        groups.add(Arrays.copyOfRange(slab, s, Math.min(slab.length, s + NODE_CAPACITY)));
+      }
+    }
+    return groups;
+  }
+
+  private double centerLon(int i) {
+    return (minLons[i] + maxLons[i]) / 2;
+  }
+
+  private double centerLat(int i) {
+    return (minLats[i] + maxLats[i]) / 2;
+  }
+
+  private static void expand(
+      Node node, double minLon, double minLat, double maxLon, double maxLat) {
+    node.minLon = Math.min(node.minLon, minLon);
+    node.minLat = Math.min(node.minLat, minLat);
+    node.maxLon = Math.max(node.maxLon, maxLon);
+    node.maxLat = Math.max(node.maxLat, maxLat);
+  }
+
+  /**
+   * Find all features contained in or intersecting the request box, depending on its mode
+   *
+   * @param request the bounding box
+   * @return the matching features, in the same order as the loaded data
+   */
+  @Override
+  public Data.GeoData convertFilterRequest(Data.FilterRequest request) {
+    if (request.isIntersects()) {
+      return intersecting(request.minLon(), request.minLat(), request.maxLon(), request.maxLat());
+    }
+    int[] hits = new int[alwaysIncluded.length + (root == null ? 0 : root.size)];
+    System.arraycopy(alwaysIncluded, 0, hits, 0, alwaysIncluded.length);
+    int count =
+        search(
+            request.minLon(),
+            request.minLat(),
+            request.maxLon(),
+            request.maxLat(),
+            true,
+            hits,
+            alwaysIncluded.length);
+    return toGeoData(hits, count);
+  }
+
+  /**
+   * Find all features whose geometry envelope intersects a box
+   *
+   * @return the matching features, in the same order as the loaded data
+   */
+  public Data.GeoData intersecting(double minLon, double minLat, double maxLon, double maxLat) {
+    int[] hits = new int[alwaysIncluded.length + (root == null ? 0 : root.size)];
+    int count = 0;
+    // only a polygon after an empty first one can still reach into the box
+    for (int i : alwaysIncluded) {
+      Data.Envelope envelope = features.get(i).envelope();
+      if (envelope != null && envelope.intersects(minLon, minLat, maxLon, maxLat)) {
+        hits[count++] = i;
+      }
+    }
+    return toGeoData(hits, search(minLon, minLat, maxLon, maxLat, false, hits, count));
+  }
+
+  /** walk the tree, appending matching feature indices to hits */
+  private int search(
+      double minLon,
+      double minLat,
+      double maxLon,
+      double maxLat,
+      boolean contained,
+      int[] hits,
+      int count) {
+    if (root == null) return count;
+    Node[] stack = new Node[64];
+    int top = 0;
+    stack[top++] = root;
+    while (top > 0) {
+      Node node = stack[--top];
+      if (node.minLon > maxLon
+          || node.maxLon < minLon
+          || node.minLat > maxLat
+          || node.maxLat < minLat) {
+        continue;
+      }
+      if (node.minLon >= minLon
+          && node.maxLon <= maxLon
+          && node.minLat >= minLat
+          && node.maxLat <= maxLat) {
+        count = collect(node, hits, count);
+        continue;
+      }
+      if (node.entries != null) {
+        for (int i : node.entries) {
+          boolean match =
+              contained
+                  ? ringMinLons[i] >= minLon
+                      && ringMaxLons[i] <= maxLon
+                      && ringMinLats[i] >= minLat
+                      && ringMaxLats[i] <= maxLat
+                  : minLons[i] <= maxLon
+                      && maxLons[i] >= minLon
+                      && minLats[i] <= maxLat
+                      && maxLats[i] >= minLat;
+          if (match) hits[count++] = i;
+        }
+      } else {
+        if (top + node.children.length > stack.length) {
+          stack = Arrays.copyOf(stack, stack.length * 2 + node.children.length);
+        }
+        for (Node child : node.children) stack[top++] = child;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Features a request may match: those without a first ring, and every feature under a leaf whose
+   * box reaches into the request box
+   *
+   * @return their indices in the loaded data, in order
+   */
+  int[] candidates(double minLon, double minLat, double maxLon, double maxLat) {
+    int[] hits = new int[alwaysIncluded.length + (root == null ? 0 : root.size)];
+    System.arraycopy(alwaysIncluded, 0, hits, 0, alwaysIncluded.length);
+    int count = alwaysIncluded.length;
+    if (root != null) {
+      Node[] stack = new Node[64];
+      int top = 0;
+      stack[top++] = root;
+      while (top > 0) {
+        Node node = stack[--top];
+        if (node.minLon > maxLon
+            || node.maxLon < minLon
+            || node.minLat > maxLat
+            || node.maxLat < minLat) {
+          continue;
+        }
+        if (node.entries != null) {
+          System.arraycopy(node.entries, 0, hits, count, node.entries.length);
+          count += node.entries.length;
+        } else {
+          if (top + node.children.length > stack.length) {
+            stack = Arrays.copyOf(stack, stack.length * 2 + node.children.length);
+          }
+          for (Node child : node.children) stack[top++] = child;
+        }
+      }
+    }
+    Arrays.sort(hits, 0, count);
+    return Arrays.copyOf(hits, count);
+  }
+
+  /**
+   * Features getter
+   *
+   * @return the indexed features, in the loaded order
+   */
+  List<Data.GeoFeature> features() {
+    return features;
+  }
+
+  private Data.GeoData toGeoData(int[] hits, int count) {
+    // restore the original feature order of the linear scan
+    Arrays.sort(hits, 0, count);
+    List<Data.GeoFeature> retFeatures = new ArrayList<>(count);
+    for (int k = 0; k < count; k++) retFeatures.add(features.get(hits[k]));
+    return new Data.GeoData("FeatureCollection", retFeatures);
+  }
+
+  /** add every feature under a node */
+  private static int collect(Node node, int[] hits, int count) {
+    if (node.entries != null) {
+      System.arraycopy(node.entries, 0, hits, count, node.entries.length);
+      return count + node.entries.length;
+    }
+    for (Node child : node.children) count = collect(child, hits, count);
+    return count;
+  }
+}
@@ -0,0 +1,38 @@
+package edu.brown.cs32.student.server.filter;
+
+import edu.brown.cs32.student.server.utils.Data;
+import edu.brown.cs32.student.server.utils.JsonReader;
+import java.io.IOException;
+
+/**
+ * The loaded redlining data with everything built from it at startup, shared by the handlers that
+ * serve it.
+ *
+ * @param geoData all features
+ * @param index spatial index over the features
+ * @param encodedFeatures the Json of every feature
+ */
+public record RedliningData(
+    Data.GeoData geoData, RTreeGeoFilter index, EncodedFeatures encodedFeatures) {
+
+  /**
+   * Build the index and encodings for loaded data
+   *
+   * @param geoData all features
+   * @return the data ready to serve
+   */
+  public static RedliningData of(Data.GeoData geoData) {
+    return new RedliningData(geoData, new RTreeGeoFilter(geoData), new EncodedFeatures(geoData));
+  }
+
+  /**
+   * Load a GeoJSON file
+   *
+   * @param path path of the file
+   * @return the data ready to serve
+   * @throws IOException when the file cannot be read
+   */
+  public static RedliningData load(String path) throws IOException {
+    return of(JsonReader.readFromFileToGeo(path));
+  }
+}
@@ -0,0 +1,172 @@
+package edu.brown.cs32.student.server.filter;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import edu.brown.cs32.student.server.GeneralResponse;
+import edu.brown.cs32.student.server.utils.Codecs;
+import edu.brown.cs32.student.server.utils.Data;
+import edu.brown.cs32.student.server.utils.GeoCoordinates;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import spark.Request;
+import spark.Response;
+import spark.Route;
+
+/**
+ * Handler class for redlining map tiles, GET /tiles/:z/:x/:y.
+ *
+ * <p>Tiles follow the slippy-map (Web Mercator) numbering. A tile holds every feature whose
+ * geometry reaches into it, clipped to the tile bounds, in the same {"result":"success","data":
+ * FeatureCollection} shape as /filter. Since the keys are quantized, panning clients ask for the
+ * same tiles again and again, so built tiles are kept in an LRU cache bounded by their size in
+ * bytes, and clients are told they may cache them too.
+ */
+public class TileHandler implements Route {
+  /** deepest zoom served */
+  public static final int MAX_ZOOM = 22;
+
+  private final RedliningData data;
+  private final LoadingCache<Tile, byte[]> cache;
+
+  /**
+   * A slippy-map tile
+   *
+   * @param z zoom
+   * @param x column, from the west
+   * @param y row, from the north
+   */
+  public record Tile(int z, int x, int y) {
+    public Tile {
+      if (z < 0 || z > MAX_ZOOM) {
+        throw new IllegalArgumentException("get z=" + z + ", should be in [0, " + MAX_ZOOM + "]");
+      }
+      int n = 1 << z;
+      if (x < 0 || x >= n || y < 0 || y >= n) {
+        throw new IllegalArgumentException(
+            "get x=" + x + ", y=" + y + ", should be in [0, " + (n - 1) + "] at zoom " + z);
+      }
+    }
+
+    public double west() {
+      return lon(x);
+    }
+
+    public double east() {
+      return lon(x + 1);
+    }
+
+    public double north() {
+      return lat(y);
+    }
+
+    public double south() {
+      return lat(y + 1);
+    }
+
+    private double lon(int column) {
+      return column / (double) (1 << z) * 360.0 - 180.0;
+    }
+
+    private double lat(int row) {
+      return Math.toDegrees(Math.atan(Math.sinh(Math.PI * (1 - 2.0 * row / (1 << z)))));
+    }
+  }
+
+  /**
+   * Constructor
+   *
+   * @param data the loaded data, or null when loading failed
+   * @param cacheBytes most bytes of tile payloads kept in the cache
+   */
+  public TileHandler(RedliningData data, long cacheBytes) {
+    this.data = data;
+    this.cache =
+        CacheBuilder.newBuilder()
+            // How many bytes of tiles at most in the cache?
+            .maximumWeight(cacheBytes)
+            .weigher((Tile tile, byte[] bytes) -> bytes.length)
+            // Keep statistical info around for profiling purposes
+            .recordStats()
+            .build(
+                new CacheLoader<Tile, byte[]>() {
+                  @Override
+                  public byte[] load(Tile key) throws IOException {
+                    return build(key);
+                  }
+                });
+  }
+
+  /**
+   * Cache getter
+   *
+   * @return local cache
+   */
+  public LoadingCache<Tile, byte[]> getCache() {
+    return cache;
+  }
+
+  /** encode the clipped features of a tile */
+  private byte[] build(Tile tile) throws IOException {
+    double west = tile.west(), south = tile.south(), east = tile.east(), north = tile.north();
+    List<byte[]> slices = new ArrayList<>();
+    for (Data.GeoFeature feature : data.index().intersecting(west, south, east, north).features()) {
+      GeoCoordinates coordinates = feature.geometry().coordinates();
+      GeoCoordinates clipped = PolygonClipper.clip(coordinates, west, south, east, north);
+      if (clipped == null) continue;
+      if (clipped == coordinates) {
+        // nothing cut off, reuse the Json encoded at load time
+        slices.add(data.encodedFeatures().bytes(feature));
+      } else {
+        Data.GeoFeature piece =
+            new Data.GeoFeature(
+                feature.type(),
+                new Data.GeoGeometry(feature.geometry().type(), clipped),
+                feature.properties());
+        slices.add(Codecs.GEO_FEATURE.toJson(piece).getBytes(StandardCharsets.UTF_8));
+      }
+    }
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    EncodedFeatures.writeSuccess(out, "FeatureCollection", slices);
+    return out.toByteArray();
+  }
+
+  /**
+   * tile
+   *
+   * @param request the request to handle
+   * @param response use to modify properties of the response
+   * @return response content
+   * @throws Exception This is part of the interface; we don't have to throw anything.
+   */
+  @Override
+  public Object handle(Request request, Response response) throws Exception {
+    Map<String, Object> result = new HashMap<>();
+    try {
+      if (data == null) throw new IllegalStateException("No redlining data loaded");
+      Tile tile =
+          new Tile(
+              Integer.parseInt(request.params(":z")),
+              Integer.parseInt(request.params(":x")),
+              Integer.parseInt(request.params(":y")));
+      byte[] bytes = cache.getUnchecked(tile);
+      response.type("application/json");
+      // a tile only changes when the server reloads its data
+      response.header("Cache-Control", "public, max-age=3600");
+      response.raw().getOutputStream().write(bytes);
+      return "";
+    } catch (IllegalArgumentException e) {
+      result.put("result", "error_bad_request");
+      result.put("data", e.getMessage());
+    } catch (Exception e) {
+      result.put("result", "error_datasource");
+      result.put("data", e.getMessage());
+    }
+    return new GeneralResponse(result).serialize();
+  }
+}
@@ -2,10 +2,15 @@ package edu.brown.cs32.student.server.loadcsv;
 
 import edu.brown.cs32.student.csv.creator.StringListCreator;
 import edu.brown.cs32.student.csv.parser.CSVParser;
+import edu.brown.cs32.student.csv.parser.ParallelCSVParser;
+import edu.brown.cs32.student.csv.table.CSVTable;
+import edu.brown.cs32.student.csv.table.DatasetRegistry;
 import edu.brown.cs32.student.server.GeneralResponse;
 import edu.brown.cs32.student.server.MissingArgException;
 import java.io.FileReader;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -22,20 +27,18 @@ import spark.utils.StringUtils;
  * complex, but this should serve as a reference.
  */
 public class LoadCSVHandler implements Route {
-  private final List<List<String>> csvData;
-  private final List<String> csvHeader;
+  private final DatasetRegistry datasets;
   private final String PREFIX = "data/";
-  //
-  //    /**
-  //     * Constructor accepts some shared state
-  //     * @param csvData the shared csvData (exclude Header if csv has head)
-  //     * @param csvHeader the shared csvHeader
-  //     *
-  //     */
+  // files at least this large are parsed on every core
+  private static final long PARALLEL_BYTES = 32L << 20;
 
-  public LoadCSVHandler(List<List<String>> csvData, List<String> csvHeader) {
-    this.csvData = csvData;
-    this.csvHeader = csvHeader;
+  /**
+   * Constructor accepts some shared state
+   *
+   * @param datasets the shared loaded tables, a successful load publishes its table there
+   */
+  public LoadCSVHandler(DatasetRegistry datasets) {
+    this.datasets = datasets;
   }
 
   /**
@@ -50,6 +53,11 @@ public class LoadCSVHandler implements Route {
   public Object handle(Request request, Response response) throws Exception {
     String fileName = request.queryParams("filepath");
     String header = request.queryParams("header");
+    // optional, build an inverted index for faster searches
+    String index = request.queryParams("index");
+    // optional, load next to other datasets under this name
+    String name = request.queryParams("name");
+    if (name == null || name.isBlank()) name = DatasetRegistry.DEFAULT_NAME;
     HashMap<String, Object> result = new HashMap<>();
     // checking null fileName
     if (fileName == null || fileName.equals("")) {
@@ -79,17 +87,36 @@ public class LoadCSVHandler implements Route {
       if (!header.equals("false") && !header.equals("true"))
         throw new InValidHeaderArgException(
             "header should be either true or false, but get " + header);
+      if (index != null && !index.equals("false") && !index.equals("true"))
+        throw new IllegalArgumentException(
+            "index should be either true or false, but get " + index);
 
       // limit the filepath only this folder.
       String file = PREFIX + fileName;
 
-      FileReader reader = new FileReader(file);
-      CSVParser<List<String>> parser =
-          new CSVParser(header.equals("true"), reader, new StringListCreator());
-      parser.parse(csvData, csvHeader);
+      CSVTable table;
+      int cores = Runtime.getRuntime().availableProcessors();
+      if (cores > 1 && Files.size(Path.of(file)) >= PARALLEL_BYTES) {
+        table =
+            new ParallelCSVParser<>(
+                    header.equals("true"), Path.of(file), new StringListCreator(), cores)
+                .parseTable();
+      } else {
+        FileReader reader = new FileReader(file);
+        CSVParser<List<String>> parser =
+            new CSVParser<>(header.equals("true"), reader, new StringListCreator());
+        table = parser.parseTable();
+      }
+      if ("true".equals(index)) {
+        table = table.withIndex();
+        result.put("index", table.index().stats());
+      }
+      // searches in flight keep the table they started with
+      List<String> evicted = datasets.publish(name, table);
+      if (!evicted.isEmpty()) result.put("evicted", evicted);
 
       result.put("result", "success");
-      result.put("request", new LoadCSVRequest(fileName, header));
+      result.put("request", new LoadCSVRequest(fileName, header, index, name));
       result.put("detail", "Successfully loaded file: " + fileName);
       return new GeneralResponse(result).serialize();
 
@@ -99,7 +126,7 @@ public class LoadCSVHandler implements Route {
     } catch (IOException e) {
       result.put("result", "error_datasource");
       result.put("detail", "Fail to load file: " + fileName);
-    } catch (InValidHeaderArgException e) {
+    } catch (InValidHeaderArgException | IllegalArgumentException e) {
       result.put("result", "error_bad_request");
       result.put("detail", e.getMessage());
     } catch (Exception e) {
@@ -110,6 +137,6 @@ public class LoadCSVHandler implements Route {
     return new GeneralResponse(result).serialize();
   }
 
-  public record LoadCSVRequest(String filepath, String header) {}
+  public record LoadCSVRequest(String filepath, String header, String index, String name) {}
   ;
 }
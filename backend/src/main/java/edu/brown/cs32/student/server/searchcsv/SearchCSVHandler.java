@@ -1,7 +1,10 @@
 package edu.brown.cs32.student.server.searchcsv;
 
 import edu.brown.cs32.student.csv.exception.NoHeaderException;
+import edu.brown.cs32.student.csv.search.PlanCache;
 import edu.brown.cs32.student.csv.search.Search;
+import edu.brown.cs32.student.csv.table.CSVTable;
+import edu.brown.cs32.student.csv.table.DatasetRegistry;
 import edu.brown.cs32.student.server.GeneralResponse;
 import edu.brown.cs32.student.server.MissingArgException;
 import java.util.HashMap;
@@ -18,19 +21,17 @@ import spark.Route;
  * complex, but this should serve as a reference.
  */
 public class SearchCSVHandler implements Route {
-  private final List<List<String>> csvData;
-  private final List<String> csvHeader;
+  private final DatasetRegistry datasets;
+  private final PlanCache plans = new PlanCache(100);
   private final String PREFIX = "data/";
 
   /**
    * Constructor accepts some shared state
    *
-   * @param csvData the shared csvData (exclude Header if csv has head)
-   * @param csvHeader the shared csvHeader
+   * @param datasets the shared loaded tables
    */
-  public SearchCSVHandler(List<List<String>> csvData, List<String> csvHeader) {
-    this.csvData = csvData;
-    this.csvHeader = csvHeader;
+  public SearchCSVHandler(DatasetRegistry datasets) {
+    this.datasets = datasets;
   }
   /**
    * Search in a loaded csv file
@@ -44,7 +45,11 @@ public class SearchCSVHandler implements Route {
   public Object handle(Request request, Response response) throws Exception {
     String query = request.queryParams("query");
     HashMap<String, Object> result = new HashMap<>();
-    if (csvData.isEmpty()) {
+    // optional, the dataset loaded under this name
+    String name = request.queryParams("name");
+    CSVTable table =
+        datasets.get(name == null || name.isBlank() ? DatasetRegistry.DEFAULT_NAME : name);
+    if (table == null || table.rowCount() == 0) {
       result.put("result", "error_bad_request");
       result.put("detail", "No CSV data loaded");
       return new GeneralResponse(result).serialize();
@@ -56,12 +61,12 @@ public class SearchCSVHandler implements Route {
         result.put("detail", "Need query field to search.");
         return new GeneralResponse(result).serialize();
       }
-      Search srh = new Search(!csvHeader.isEmpty(), csvHeader, csvData);
+      Search srh = new Search(table, plans);
       result.put("request", new SearchCSVRequest(query));
       List<List<String>> res = srh.search(query);
       result.put("result", "success");
-      result.put("header", !csvHeader.isEmpty());
-      result.put("headerData", csvHeader);
+      result.put("header", table.hasHeader());
+      result.put("headerData", table.header());
       result.put("detail", res);
       return new GeneralResponse(result).serialize();
     } catch (MissingArgException | IllegalArgumentException e) {
@@ -0,0 +1,62 @@
+package edu.brown.cs32.student.server.utils;
+
+import com.squareup.moshi.JsonAdapter;
+import com.squareup.moshi.Moshi;
+import com.squareup.moshi.Types;
+import edu.brown.cs32.student.server.weather.Data.ForecastAPIData;
+import edu.brown.cs32.student.server.weather.Data.PointAPIData;
+import java.lang.reflect.Type;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The one Moshi instance of the server and its Json adapters.
+ *
+ * <p>Building a Moshi and looking up an adapter reflects over the target type, so both happen once
+ * here instead of on every request. Moshi and its adapters are thread-safe and can be shared by all
+ * request threads.
+ */
+public final class Codecs {
+  /** the shared Moshi */
+  public static final Moshi MOSHI = new Moshi.Builder().build();
+
+  /** a generic Json object */
+  public static final JsonAdapter<Map<String, Object>> MAP =
+      MOSHI.adapter(Types.newParameterizedType(Map.class, String.class, Object.class));
+
+  public static final JsonAdapter<String> STRING = MOSHI.adapter(String.class);
+
+  // server.utils.Data
+  public static final JsonAdapter<Data.FilterRequest> FILTER_REQUEST =
+      MOSHI.adapter(Data.FilterRequest.class);
+  public static final JsonAdapter<Data.FilterResponse> FILTER_RESPONSE =
+      MOSHI.adapter(Data.FilterResponse.class);
+  public static final JsonAdapter<Data.GeoData> GEO_DATA = MOSHI.adapter(Data.GeoData.class);
+  public static final JsonAdapter<Data.GeoFeature> GEO_FEATURE =
+      MOSHI.adapter(Data.GeoFeature.class);
+  public static final JsonAdapter<Data.GeoGeometry> GEO_GEOMETRY =
+      MOSHI.adapter(Data.GeoGeometry.class);
+  public static final JsonAdapter<Data.Note> NOTE = MOSHI.adapter(Data.Note.class);
+  public static final JsonAdapter<Data.NoteResponse> NOTE_RESPONSE =
+      MOSHI.adapter(Data.NoteResponse.class);
+
+  // server.weather.Data
+  public static final JsonAdapter<PointAPIData> POINT_API_DATA = MOSHI.adapter(PointAPIData.class);
+  public static final JsonAdapter<ForecastAPIData> FORECAST_API_DATA =
+      MOSHI.adapter(ForecastAPIData.class);
+
+  private static final Map<Type, JsonAdapter<?>> adapters = new ConcurrentHashMap<>();
+
+  private Codecs() {}
+
+  /**
+   * Adapter for any other type, looked up once and cached
+   *
+   * @param type the type to read or write
+   * @return the adapter
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> JsonAdapter<T> adapter(Type type) {
+    return (JsonAdapter<T>) adapters.computeIfAbsent(type, MOSHI::adapter);
+  }
+}
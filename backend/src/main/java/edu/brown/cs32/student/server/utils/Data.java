@@ -1,14 +1,28 @@
 package edu.brown.cs32.student.server.utils;
 
-import java.math.RoundingMode;
-import java.text.DecimalFormat;
 import java.util.List;
 import java.util.Map;
 
 public class Data {
 
-  public record FilterRequest(Double minLat, Double maxLat, Double minLon, Double maxLon) {
+  public record FilterRequest(
+      Double minLat, Double maxLat, Double minLon, Double maxLon, String mode) {
+    /** features fully inside the box, the default */
+    public static final String CONTAINED = "contained";
+    /** features reaching into the box */
+    public static final String INTERSECTS = "intersects";
+
+    public FilterRequest(Double minLat, Double maxLat, Double minLon, Double maxLon) {
+      this(minLat, maxLat, minLon, maxLon, null);
+    }
+
     public FilterRequest {
+      if (mode == null) mode = CONTAINED;
+      if (!mode.equals(CONTAINED) && !mode.equals(INTERSECTS)) {
+        throw new IllegalArgumentException(
+            "get mode=" + mode + ", should be " + CONTAINED + " or " + INTERSECTS);
+      }
+
       // default max number
       if (minLat == null) minLat = -90.0;
       if (maxLat == null) maxLat = 90.0;
@@ -39,15 +53,62 @@ public class Data {
       }
 
       // truncate the rest
-      DecimalFormat df = new DecimalFormat();
-      df.setMaximumFractionDigits(3);
-      df.setRoundingMode(RoundingMode.FLOOR);
       // get the minimum.
-      minLat = Double.parseDouble(df.format(minLat));
-      minLon = Double.parseDouble(df.format(minLon));
+      minLat = floorMilli(minLat);
+      minLon = floorMilli(minLon);
       // add 0.001 to get the maximum.
-      if (maxLat != 90) maxLat = Double.parseDouble(df.format(maxLat)) + 0.001;
-      if (maxLon != 180) maxLon = Double.parseDouble(df.format(maxLon)) + 0.001;
+      if (maxLat != 90) maxLat = floorMilli(maxLat) + 0.001;
+      if (maxLon != 180) maxLon = floorMilli(maxLon) + 0.001;
+    }
+
+    /**
+     * Floor to three decimals, giving the same double the former DecimalFormat (FLOOR, three
+     * fraction digits) and Double.parseDouble round trip gave
+     */
+    private static double floorMilli(double x) {
+      // DecimalFormat printed these as "-0"
+      if (x == 0 || (x < 0 && x > -1e-4)) return x < 0 ? -0.0 : x;
+      int k = (int) Math.floor(x * 1000);
+      // x * 1000 is rounded, step to the largest k with k / 1000.0 <= x
+      while ((k + 1) / 1000.0 <= x) k++;
+      while (k / 1000.0 > x) k--;
+      return k / 1000.0;
+    }
+
+    /**
+     * The normalized box in integer thousandths of a degree
+     *
+     * @return the key identifying which features match this request
+     */
+    public Key key() {
+      return new Key(millis(minLat), millis(maxLat), millis(minLon), millis(maxLon), mode);
+    }
+
+    private static int millis(double normalized) {
+      return (int) Math.round(normalized * 1000);
+    }
+
+    /**
+     * A normalized box in integer thousandths of a degree, bounds inclusive
+     *
+     * @param mode contained or intersects
+     */
+    public record Key(int minLat, int maxLat, int minLon, int maxLon, String mode) {
+      /**
+       * @param inner another box
+       * @return whether every feature matching inner also matches this box
+       */
+      public boolean covers(Key inner) {
+        return mode.equals(inner.mode)
+            && minLat <= inner.minLat
+            && maxLat >= inner.maxLat
+            && minLon <= inner.minLon
+            && maxLon >= inner.maxLon;
+      }
+    }
+
+    public boolean isIntersects() {
+      return mode.equals(INTERSECTS);
     }
   }
 
@@ -55,9 +116,43 @@ public class Data {
 
   public record GeoData(String type, List<GeoFeature> features) {}
 
-  public record GeoFeature(String type, GeoGeometry geometry, Map<String, Object> properties) {}
+  public record GeoFeature(String type, GeoGeometry geometry, Map<String, Object> properties) {
+    /**
+     * @return box of the whole geometry computed at load time, null without coordinates
+     */
+    public Envelope envelope() {
+      if (geometry == null || geometry.coordinates() == null) return null;
+      return geometry.coordinates().envelope();
+    }
+  }
 
-  public record GeoGeometry(String type, List<List<List<List<Double>>>> coordinates) {}
+  public record GeoGeometry(String type, GeoCoordinates coordinates) {
+    public GeoGeometry(String type, List<List<List<List<Double>>>> coordinates) {
+      this(type, coordinates == null ? null : GeoCoordinates.of(coordinates));
+    }
+  }
+
+  public record Envelope(double minLon, double minLat, double maxLon, double maxLat) {
+    /**
+     * @return whether this box lies inside the given box
+     */
+    public boolean within(double minLon, double minLat, double maxLon, double maxLat) {
+      return this.minLon >= minLon
+          && this.maxLon <= maxLon
+          && this.minLat >= minLat
+          && this.maxLat <= maxLat;
+    }
+
+    /**
+     * @return whether this box shares a point with the given box
+     */
+    public boolean intersects(double minLon, double minLat, double maxLon, double maxLat) {
+      return this.minLon <= maxLon
+          && this.maxLon >= minLon
+          && this.minLat <= maxLat
+          && this.maxLat >= minLat;
+    }
+  }
 
   public record Note(String title, String note, Double latitude, Double longitude) {}
 
@@ -0,0 +1,229 @@
+package edu.brown.cs32.student.server.utils;
+
+import com.squareup.moshi.JsonClass;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * MultiPolygon coordinates stored as packed primitive arrays.
+ *
+ * <p>All positions of all rings live in one interleaved {@code [lon, lat, lon, lat, ...]} array,
+ * with two offset tables marking where every ring and every polygon starts. The hot paths use the
+ * primitive accessors ({@link #lon}, {@link #lat}, {@link #vertexCount}); the {@code List} view is
+ * kept for callers that still walk the nested GeoJSON shape and only boxes on access.
+ *
+ * <p>The Json adapter is the hand-written {@link GeoCoordinatesJsonAdapter}, which Moshi finds by
+ * name through the {@code JsonClass} annotation, so every Moshi instance reads and writes this type
+ * without extra registration. Only longitude and latitude are kept for every position.
+ */
+@JsonClass(generateAdapter = true, generator = "manual")
+public final class GeoCoordinates extends AbstractList<List<List<List<Double>>>> {
+  final double[] ordinates;
+  // vertex index where ring i starts; ringStarts[ringCount] is the vertex count
+  final int[] ringStarts;
+  // ring index where polygon i starts; polygonStarts[polygonCount] is the ring count
+  final int[] polygonStarts;
+  // computed once when the coordinates are built, null without vertices
+  private final Data.Envelope envelope;
+  private final Data.Envelope firstRingEnvelope;
+  // cached like String's, 0 until computed
+  private int hash;
+
+  /**
+   * Constructor over already packed arrays, which are not copied
+   *
+   * @param ordinates interleaved lon, lat of every vertex
+   * @param ringStarts first vertex of every ring, plus the total vertex count
+   * @param polygonStarts first ring of every polygon, plus the total ring count
+   */
+  public GeoCoordinates(double[] ordinates, int[] ringStarts, int[] polygonStarts) {
+    this.ordinates = ordinates;
+    this.ringStarts = ringStarts;
+    this.polygonStarts = polygonStarts;
+    this.envelope = envelope(0, ordinates.length / 2);
+    this.firstRingEnvelope =
+        polygonCount() > 0 && ringCount(0) > 0 ? envelope(ringStarts[0], ringStarts[1]) : null;
+  }
+
+  private Data.Envelope envelope(int fromVertex, int toVertex) {
+    if (fromVertex >= toVertex) return null;
+    double minLon = Double.POSITIVE_INFINITY, minLat = Double.POSITIVE_INFINITY;
+    double maxLon = Double.NEGATIVE_INFINITY, maxLat = Double.NEGATIVE_INFINITY;
+    for (int v = fromVertex; v < toVertex; v++) {
+      double lon = ordinates[2 * v], lat = ordinates[2 * v + 1];
+      if (lon < minLon) minLon = lon;
+      if (lon > maxLon) maxLon = lon;
+      if (lat < minLat) minLat = lat;
+      if (lat > maxLat) maxLat = lat;
+    }
+    return new Data.Envelope(minLon, minLat, maxLon, maxLat);
+  }
+
+  /**
+   * @return box of every vertex, null when there are none
+   */
+  public Data.Envelope envelope() {
+    return envelope;
+  }
+
+  /**
+   * @return box of the outer ring of the first polygon, the ring "contained" filtering has always
+   *     checked; null when that ring is missing or empty
+   */
+  public Data.Envelope firstRingEnvelope() {
+    return firstRingEnvelope;
+  }
+
+  /**
+   * Pack nested GeoJSON MultiPolygon coordinates
+   *
+   * @param coordinates polygons, rings, positions, ordinates
+   * @return the packed coordinates
+   */
+  public static GeoCoordinates of(List<List<List<List<Double>>>> coordinates) {
+    int polygons = coordinates.size();
+    int rings = 0, vertices = 0;
+    for (List<List<List<Double>>> polygon : coordinates) {
+      rings += polygon.size();
+      for (List<List<Double>> ring : polygon) vertices += ring.size();
+    }
+    double[] ordinates = new double[vertices * 2];
+    int[] ringStarts = new int[rings + 1];
+    int[] polygonStarts = new int[polygons + 1];
+    int r = 0, v = 0;
+    for (int p = 0; p < polygons; p++) {
+      polygonStarts[p] = r;
+      for (List<List<Double>> ring : coordinates.get(p)) {
+        ringStarts[r++] = v;
+        for (List<Double> position : ring) {
+          ordinates[2 * v] = position.get(0);
+          ordinates[2 * v + 1] = position.get(1);
+          v++;
+        }
+      }
+    }
+    polygonStarts[polygons] = r;
+    ringStarts[rings] = v;
+    return new GeoCoordinates(ordinates, ringStarts, polygonStarts);
+  }
+
+  /**
+   * @return number of polygons
+   */
+  public int polygonCount() {
+    return polygonStarts.length - 1;
+  }
+
+  /**
+   * @return number of rings in a polygon
+   */
+  public int ringCount(int polygon) {
+    return polygonStarts[polygon + 1] - polygonStarts[polygon];
+  }
+
+  /**
+   * @return number of vertices in every ring of every polygon
+   */
+  public int vertexCount() {
+    return ordinates.length / 2;
+  }
+
+  /**
+   * @return number of vertices in a ring of a polygon
+   */
+  public int vertexCount(int polygon, int ring) {
+    int r = ringIndex(polygon, ring);
+    return ringStarts[r + 1] - ringStarts[r];
+  }
+
+  /**
+   * @return longitude of a vertex
+   */
+  public double lon(int polygon, int ring, int vertex) {
+    return ordinates[2 * (ringStarts[ringIndex(polygon, ring)] + vertex)];
+  }
+
+  /**
+   * @return latitude of a vertex
+   */
+  public double lat(int polygon, int ring, int vertex) {
+    return ordinates[2 * (ringStarts[ringIndex(polygon, ring)] + vertex) + 1];
+  }
+
+  private int ringIndex(int polygon, int ring) {
+    if (ring < 0 || ring >= ringCount(polygon)) throw new IndexOutOfBoundsException(ring);
+    return polygonStarts[polygon] + ring;
+  }
+
+  @Override
+  public List<List<List<Double>>> get(int polygon) {
+    int rings = ringCount(polygon);
+    return new AbstractList<>() {
+      @Override
+      public List<List<Double>> get(int ring) {
+        int vertices = vertexCount(polygon, ring);
+        int offset = 2 * ringStarts[ringIndex(polygon, ring)];
+        return new AbstractList<>() {
+          @Override
+          public List<Double> get(int vertex) {
+            if (vertex < 0 || vertex >= vertices) throw new IndexOutOfBoundsException(vertex);
+            return List.of(ordinates[offset + 2 * vertex], ordinates[offset + 2 * vertex + 1]);
+          }
+
+          @Override
+          public int size() {
+            return vertices;
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return rings;
+      }
+    };
+  }
+
+  @Override
+  public int size() {
+    return polygonCount();
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (o instanceof GeoCoordinates other) {
+      return Arrays.equals(ordinates, other.ordinates)
+          && Arrays.equals(ringStarts, other.ringStarts)
+          && Arrays.equals(polygonStarts, other.polygonStarts);
+    }
+    return super.equals(o);
+  }
+
+  /**
+   * The hash List gives the nested lists, since they may equal this, computed from the packed
+   * arrays without boxing
+   */
+  @Override
+  public int hashCode() {
+    int h = hash;
+    if (h == 0) {
+      h = 1;
+      for (int p = 0; p < polygonCount(); p++) {
+        int polygonHash = 1;
+        for (int r = polygonStarts[p]; r < polygonStarts[p + 1]; r++) {
+          int ringHash = 1;
+          for (int v = ringStarts[r]; v < ringStarts[r + 1]; v++) {
+            int positionHash = 31 + Double.hashCode(ordinates[2 * v]);
+            positionHash = 31 * positionHash + Double.hashCode(ordinates[2 * v + 1]);
+            ringHash = 31 * ringHash + positionHash;
+          }
+          polygonHash = 31 * polygonHash + ringHash;
+        }
+        h = 31 * h + polygonHash;
+      }
+      hash = h;
+    }
+    return h;
+  }
+}
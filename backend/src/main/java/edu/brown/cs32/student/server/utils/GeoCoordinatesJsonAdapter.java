@@ -0,0 +1,91 @@
+package edu.brown.cs32.student.server.utils;
+
+import com.squareup.moshi.JsonAdapter;
+import com.squareup.moshi.JsonReader;
+import com.squareup.moshi.JsonWriter;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Json adapter for {@link GeoCoordinates}.
+ *
+ * <p>Reads MultiPolygon coordinates straight into primitive arrays and writes them back as the
+ * standard nested GeoJSON arrays, without boxing a single ordinate. Moshi loads it by name for the
+ * {@code JsonClass} annotated GeoCoordinates.
+ */
+public final class GeoCoordinatesJsonAdapter extends JsonAdapter<GeoCoordinates> {
+
+  @Override
+  public GeoCoordinates fromJson(JsonReader reader) throws IOException {
+    double[] ordinates = new double[64];
+    int[] ringStarts = new int[8];
+    int[] polygonStarts = new int[4];
+    int vertices = 0, rings = 0, polygons = 0;
+
+    reader.beginArray();
+    while (reader.hasNext()) {
+      if (polygons + 1 >= polygonStarts.length) {
+        polygonStarts = Arrays.copyOf(polygonStarts, polygonStarts.length * 2);
+      }
+      polygonStarts[polygons++] = rings;
+      reader.beginArray();
+      while (reader.hasNext()) {
+        if (rings + 1 >= ringStarts.length) {
+          ringStarts = Arrays.copyOf(ringStarts, ringStarts.length * 2);
+        }
+        ringStarts[rings++] = vertices;
+        reader.beginArray();
+        while (reader.hasNext()) {
+          if (2 * vertices + 2 > ordinates.length) {
+            ordinates = Arrays.copyOf(ordinates, ordinates.length * 2);
+          }
+          reader.beginArray();
+          ordinates[2 * vertices] = reader.nextDouble();
+          ordinates[2 * vertices + 1] = reader.nextDouble();
+          // altitude and anything after it is dropped
+          while (reader.hasNext()) reader.skipValue();
+          reader.endArray();
+          vertices++;
+        }
+        reader.endArray();
+      }
+      reader.endArray();
+    }
+    reader.endArray();
+
+    polygonStarts[polygons] = rings;
+    ringStarts[rings] = vertices;
+    return new GeoCoordinates(
+        Arrays.copyOf(ordinates, 2 * vertices),
+        Arrays.copyOf(ringStarts, rings + 1),
+        Arrays.copyOf(polygonStarts, polygons + 1));
+  }
+
+  @Override
+  public void toJson(JsonWriter writer, GeoCoordinates value) throws IOException {
+    double[] ordinates = value.ordinates;
+    int[] ringStarts = value.ringStarts;
+    int[] polygonStarts = value.polygonStarts;
+    writer.beginArray();
+    for (int p = 0; p + 1 < polygonStarts.length; p++) {
+      writer.beginArray();
+      for (int r = polygonStarts[p]; r < polygonStarts[p + 1]; r++) {
+        writer.beginArray();
+        for (int v = ringStarts[r]; v < ringStarts[r + 1]; v++) {
+          writer.beginArray();
+          writer.value(ordinates[2 * v]);
+          writer.value(ordinates[2 * v + 1]);
+          writer.endArray();
+        }
+        writer.endArray();
+      }
+      writer.endArray();
+    }
+    writer.endArray();
+  }
+
+  @Override
+  public String toString() {
+    return "JsonAdapter(GeoCoordinates)";
+  }
+}
@@ -1,20 +1,21 @@
 package edu.brown.cs32.student.server.utils;
 
-import com.squareup.moshi.Moshi;
-import com.squareup.moshi.Types;
+import com.squareup.moshi.JsonAdapter;
+import java.io.File;
 import java.io.IOException;
-import java.lang.reflect.Type;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import okio.BufferedSource;
+import okio.Okio;
 
 public class JsonReader {
   // input: json string
   // output: hash map
   public static Map<String, Object> readFromString(String jsonString) throws IOException {
-    Moshi moshi = new Moshi.Builder().build();
-    Type type = Types.newParameterizedType(Map.class, String.class, Object.class);
-    Map<String, Object> ret = (Map<String, Object>) moshi.adapter(type).fromJson(jsonString);
+    Map<String, Object> ret = Codecs.MAP.fromJson(jsonString);
     return ret;
   }
 
@@ -23,26 +24,40 @@ public class JsonReader {
     return readFromString(jsonString);
   }
 
-  // read from a file to geodata
+  // read from a file to geodata, streaming one feature at a time
   public static Data.GeoData readFromFileToGeo(String path) throws IOException {
-    String jsonString = new String(Files.readAllBytes(Paths.get(path)));
-    Moshi moshi = new Moshi.Builder().build();
-    Data.GeoData data = moshi.adapter(Data.GeoData.class).fromJson(jsonString);
-    return data;
+    JsonAdapter<Data.GeoFeature> featureAdapter = Codecs.GEO_FEATURE;
+    String type = null;
+    List<Data.GeoFeature> features = new ArrayList<>();
+    try (BufferedSource source = Okio.buffer(Okio.source(new File(path)));
+        com.squareup.moshi.JsonReader reader = com.squareup.moshi.JsonReader.of(source)) {
+      reader.beginObject();
+      while (reader.hasNext()) {
+        switch (reader.nextName()) {
+          case "type" -> type = reader.nextString();
+          case "features" -> {
+            reader.beginArray();
+            while (reader.hasNext()) features.add(featureAdapter.fromJson(reader));
+            reader.endArray();
+          }
+          default -> reader.skipValue();
+        }
+      }
+      reader.endObject();
+    }
+    return new Data.GeoData(type, features);
   }
 
   // json string to note
   public static Data.Note readNoteFromString(String jsonString) throws IOException {
-    Moshi moshi = new Moshi.Builder().build();
-    Data.Note data = moshi.adapter(Data.Note.class).fromJson(jsonString);
+    Data.Note data = Codecs.NOTE.fromJson(jsonString);
     return data;
   }
 
   // json string into FilterRequest
   public static Data.FilterRequest readFilterFromString(String jsonString) throws Throwable {
-    Moshi moshi = new Moshi.Builder().build();
     try {
-      return moshi.adapter(Data.FilterRequest.class).fromJson(jsonString);
+      return Codecs.FILTER_REQUEST.fromJson(jsonString);
     } catch (AssertionError ae) {
       throw ae.getCause();
     }
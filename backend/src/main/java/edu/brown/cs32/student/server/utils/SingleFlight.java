@@ -0,0 +1,71 @@
+package edu.brown.cs32.student.server.utils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Runs one call per key at a time, handing its result to every caller that asks meanwhile.
+ *
+ * <p>The first caller of a key starts the call and gets its future. Callers of the same key
+ * arriving before it is done get that future too instead of making the call again, so they all see
+ * the same value or the same exception, and none of them blocks while the call runs. Once done the
+ * key is free, so a later caller runs the call anew: results are not kept, that is up to a cache in
+ * front.
+ */
+public class SingleFlight<K, V> {
+  private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+  private final AtomicLong issued = new AtomicLong();
+  private final AtomicLong coalesced = new AtomicLong();
+
+  /**
+   * Call counters
+   *
+   * @param issued calls started
+   * @param coalesced callers that joined a call started by another
+   */
+  public record Stats(long issued, long coalesced) {}
+
+  /**
+   * Stats getter
+   *
+   * @return the call counters so far
+   */
+  public Stats stats() {
+    return new Stats(issued.get(), coalesced.get());
+  }
+
+  /**
+   * Start the call, or join the one already running for the key
+   *
+   * @param key what the call fetches
+   * @param call starts fetching the value
+   * @return the value of the call, or the exception it completed with
+   */
+  public CompletableFuture<V> submit(K key, Supplier<CompletableFuture<V>> call) {
+    CompletableFuture<V> mine = new CompletableFuture<>();
+    CompletableFuture<V> running = inFlight.putIfAbsent(key, mine);
+    if (running != null) {
+      coalesced.incrementAndGet();
+      // a copy, so no caller can complete the call for the others
+      return running.copy();
+    }
+    issued.incrementAndGet();
+    CompletableFuture<V> started;
+    try {
+      started = call.get();
+    } catch (RuntimeException | Error e) {
+      started = CompletableFuture.failedFuture(e);
+    }
+    started.whenComplete(
+        (value, e) -> {
+          // free the key first, a caller seeing the call done must not join it
+          inFlight.remove(key, mine);
+          if (e == null) mine.complete(value);
+          else mine.completeExceptionally(e instanceof CompletionException ? e.getCause() : e);
+        });
+    return mine.copy();
+  }
+}
@@ -1,12 +1,14 @@
 package edu.brown.cs32.student.server.viewcsv;
 
+import com.squareup.moshi.JsonWriter;
+import edu.brown.cs32.student.csv.table.CSVTable;
+import edu.brown.cs32.student.csv.table.DatasetRegistry;
 import edu.brown.cs32.student.server.GeneralResponse;
-import edu.brown.cs32.student.server.MissingArgException;
-import edu.brown.cs32.student.server.loadcsv.InValidHeaderArgException;
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import okio.BufferedSink;
+import okio.Okio;
 import spark.Request;
 import spark.Response;
 import spark.Route;
@@ -17,27 +19,27 @@ import spark.Route;
  * <p>This endpoint is similar to the endpoint(s) you'll need to create for Sprint 2. It takes a
  * basic GET request with no Json body, and returns a Json object in reply. The responses are more
  * complex, but this should serve as a reference.
+ *
+ * <p>Rows are encoded straight from the table columns to the response as they are written, so a
+ * view takes the same memory whatever the size of the table. A page is asked for with offset and
+ * limit, and the next page with the cursor given back as next.
  */
 public class ViewCSVHandler implements Route {
-  private final List<List<String>> csvData;
-  private final List<String> csvHeader;
+  private final DatasetRegistry datasets;
 
   private final String PREFIX = "data/";
-  HashMap<String, Object> result = new HashMap<>();
 
   /**
    * Constructor accepts some shared state
    *
-   * @param csvData the shared csvData (exclude Header if csv has head)
-   * @param csvHeader the shared csvHeader
+   * @param datasets the shared loaded tables
    */
-  public ViewCSVHandler(List<List<String>> csvData, List<String> csvHeader) {
-    this.csvData = csvData;
-    this.csvHeader = csvHeader;
+  public ViewCSVHandler(DatasetRegistry datasets) {
+    this.datasets = datasets;
   }
 
   /**
-   * View a loaded csv file
+   * View a loaded csv file, or a page of it
    *
    * @param request the request to handle
    * @param response use to modify properties of the response
@@ -46,38 +48,98 @@ public class ViewCSVHandler implements Route {
    */
   @Override
   public Object handle(Request request, Response response) throws Exception {
-
-    if (csvData.isEmpty()) {
-      result.put("result", "error_bad_request");
-      result.put("detail", "No CSV data loaded");
-      return new GeneralResponse(result).serialize();
-    }
+    HashMap<String, Object> result = new HashMap<>();
+    ViewCursor page;
+    CSVTable table;
     try {
-      result.put("result", "success");
-      result.put("header", !csvHeader.isEmpty());
-      if (csvHeader.isEmpty()) {
-        result.put("detail", csvData);
+      String cursor = request.queryParams("cursor");
+      if (cursor != null) {
+        page = ViewCursor.decode(cursor);
+        table = datasets.get(page.name());
+        if (table != null && table.version() != page.version()) {
+          throw new IllegalArgumentException(
+              "Dataset " + page.name() + " was loaded again, view it from offset 0");
+        }
       } else {
-        List<List<String>> csvwithheader = new ArrayList<>();
-        csvwithheader.add(csvHeader); // Add the header as the first element
-        csvwithheader.addAll(csvData);
-        result.put("detail", csvwithheader);
+        // optional, the dataset loaded under this name
+        String name = request.queryParams("name");
+        if (name == null || name.isBlank()) name = DatasetRegistry.DEFAULT_NAME;
+        table = datasets.get(name);
+        // optional, by default every row
+        int offset = parseCount("offset", request.queryParams("offset"), 0);
+        int limit = parseCount("limit", request.queryParams("limit"), Integer.MAX_VALUE);
+        if (limit == 0) throw new IllegalArgumentException("get limit=0, should be positive");
+        page = new ViewCursor(name, table == null ? 0 : table.version(), offset, limit);
       }
-      return new GeneralResponse(result).serialize();
-    } catch (MissingArgException e) {
+    } catch (IllegalArgumentException e) {
       result.put("result", "error_bad_request");
       result.put("detail", e.getMessage());
-    } catch (IOException e) {
-      result.put("result", "error_datasource");
-      result.put("detail", "File access failed.");
-    } catch (InValidHeaderArgException e) {
+      return new GeneralResponse(result).serialize();
+    }
+    if (table == null || table.rowCount() == 0) {
       result.put("result", "error_bad_request");
-      result.put("detail", e.getMessage());
-    } catch (Exception e) {
-      // open file failed, error
-      e.printStackTrace();
-      result.put("error_datasource", "File access failed.");
+      result.put("detail", "No CSV data loaded");
+      return new GeneralResponse(result).serialize();
+    }
+
+    BufferedSink sink = Okio.buffer(Okio.sink(response.raw().getOutputStream()));
+    writePage(sink, table, page);
+    sink.flush();
+    return "";
+  }
+
+  /**
+   * Write a success response with the rows of a page, the header first when there is one
+   *
+   * @param sink where the response goes, full segments are passed on as they are written
+   * @param table the table to view
+   * @param page the rows to write
+   * @throws IOException when the output fails
+   */
+  static void writePage(BufferedSink sink, CSVTable table, ViewCursor page) throws IOException {
+    int total = table.rowCount();
+    int start = Math.min(page.offset(), total);
+    int end = (int) Math.min((long) start + page.limit(), total);
+    JsonWriter writer = JsonWriter.of(sink);
+    writer.beginObject();
+    writer.name("result").value("success");
+    writer.name("header").value(table.hasHeader());
+    writer.name("offset").value(start);
+    writer.name("total").value(total);
+    if (end < total) {
+      writer
+          .name("next")
+          .value(new ViewCursor(page.name(), table.version(), end, page.limit()).encode());
+    }
+    writer.name("detail").beginArray();
+    if (table.hasHeader()) writeRow(writer, table.header());
+    for (int row = start; row < end; row++) {
+      writer.beginArray();
+      for (int c = 0; c < table.columnCount(); c++) writer.value(table.column(c).get(row));
+      writer.endArray();
+    }
+    writer.endArray();
+    writer.endObject();
+    // the writer would close the sink, which is the response's
+    writer.flush();
+  }
+
+  private static void writeRow(JsonWriter writer, List<String> cells) throws IOException {
+    writer.beginArray();
+    for (String cell : cells) writer.value(cell);
+    writer.endArray();
+  }
+
+  /** a non-negative integer query parameter, or the default when it is missing */
+  private static int parseCount(String param, String value, int missing) {
+    if (value == null || value.isBlank()) return missing;
+    try {
+      int count = Integer.parseInt(value.trim());
+      if (count >= 0) return count;
+    } catch (NumberFormatException e) {
+      // reported below
     }
-    return new GeneralResponse(result).serialize();
+    throw new IllegalArgumentException(
+        "get " + param + "=" + value + ", should be a non-negative integer");
   }
 }
@@ -0,0 +1,53 @@
+package edu.brown.cs32.student.server.viewcsv;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Where the next page of a /viewcsv starts.
+ *
+ * <p>The token names the dataset and the version of its table, so a page is never taken from a
+ * table loaded after the first page was read.
+ *
+ * @param name name of the dataset
+ * @param version version of the table the pages are read from
+ * @param offset row id of the first row of the page
+ * @param limit most rows in the page
+ */
+record ViewCursor(String name, long version, int offset, int limit) {
+  /**
+   * Token getter
+   *
+   * @return the cursor as an opaque url-safe token
+   */
+  String encode() {
+    String plain = version + ":" + offset + ":" + limit + ":" + name;
+    return Base64.getUrlEncoder()
+        .withoutPadding()
+        .encodeToString(plain.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Read a token back
+   *
+   * @param token a token made by encode
+   * @return the cursor
+   * @throws IllegalArgumentException when the token was not made by encode
+   */
+  static ViewCursor decode(String token) {
+    try {
+      String plain = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+      String[] parts = plain.split(":", 4);
+      ViewCursor cursor =
+          new ViewCursor(
+              parts[3],
+              Long.parseLong(parts[0]),
+              Integer.parseInt(parts[1]),
+              Integer.parseInt(parts[2]));
+      if (cursor.offset >= 0 && cursor.limit > 0) return cursor;
+    } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+      // reported below
+    }
+    throw new IllegalArgumentException("get cursor=" + token + ", should be a next from /viewcsv");
+  }
+}
@@ -1,21 +1,55 @@
 package edu.brown.cs32.student.server.weather;
 
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalNotification;
 import java.io.IOException;
-import java.time.Duration;
-import java.time.LocalDateTime;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
-/** NWSRequestConverter with cache */
+/**
+ * NWSRequestConverter with cache.
+ *
+ * <p>A request is answered from any cached request within 3 miles and an hour of it. The cached
+ * requests are also kept in a ProximityIndex, so finding one probes a few grid cells rather than
+ * measuring the distance to every cached request, and the cache can hold many thousands.
+ *
+ * <p>A miss is answered from two more caches: the hourly forecast url of a place, kept long since
+ * gridpoints rarely change, and the whole forecast of a gridpoint, kept until it is refreshed. So
+ * the API is called about once per gridpoint per refresh, whatever the hours asked for. Misses
+ * arriving together share the call of their place, then the call of their gridpoint, through a
+ * SingleFlight. Both caches are RefreshingCaches: an old answer is served at once while it is
+ * fetched again in the background, and for a while longer when the API fails.
+ */
 public class CachedNWSRequestConverter {
   private final NWSRequestConverter wrappedConverter;
 
-  private final LoadingCache<Data.WeatherRequest, Data.ForecastAPIPeriod> cache;
+  // every hour of a gridpoint's forecast answers from these without calling the API
+  private static final int MAX_POINTS = 100_000;
+  private static final int MAX_FORECASTS = 2_000;
+  // seconds before a key whose refresh failed is refreshed again
+  private static final int RETRY_TIME = 60;
+
+  private final Cache<Data.WeatherRequest, Data.ForecastAPIPeriod> cache;
+  // place as /points takes it -> forecastHourly url, which rarely changes
+  private final RefreshingCache<String> points;
+  // forecastHourly url -> the periods of the next days
+  private final RefreshingCache<HourlyForecast> forecasts;
+
+  // the cached requests by place and hour, kept in step by the removal listener
+  private final ProximityIndex index = new ProximityIndex(3, 3600);
 
   /**
-   * Constructor
+   * Constructor, gridpoints refreshed after a week and their forecasts after an hour, both served
+   * for 6 more hours while the API fails
    *
    * @param wrappedConverter
    * @param cacheSize
@@ -23,25 +57,96 @@ public class CachedNWSRequestConverter {
    */
   public CachedNWSRequestConverter(
       NWSRequestConverter wrappedConverter, int cacheSize, int cacheTime) {
+    this(wrappedConverter, cacheSize, cacheTime, 7 * 24 * 3600, 3600, 6 * 3600);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param wrappedConverter the NWS API
+   * @param cacheSize most answered requests kept
+   * @param cacheTime seconds an answered request is kept
+   * @param pointTime seconds before the forecast url of a place is fetched again
+   * @param forecastTime seconds before the forecast of a gridpoint is fetched again
+   * @param staleTime seconds past those that the last answers are still served, while the API is
+   *     fetched again or fails
+   */
+  public CachedNWSRequestConverter(
+      NWSRequestConverter wrappedConverter,
+      int cacheSize,
+      int cacheTime,
+      int pointTime,
+      int forecastTime,
+      int staleTime) {
+    this(
+        wrappedConverter,
+        cacheSize,
+        cacheTime,
+        pointTime,
+        forecastTime,
+        staleTime,
+        refresher(),
+        Ticker.systemTicker());
+  }
+
+  CachedNWSRequestConverter(
+      NWSRequestConverter wrappedConverter,
+      int cacheSize,
+      int cacheTime,
+      int pointTime,
+      int forecastTime,
+      int staleTime,
+      Executor refresher,
+      Ticker ticker) {
     this.wrappedConverter = wrappedConverter;
+    this.points =
+        new RefreshingCache<>(
+            MAX_POINTS,
+            pointTime,
+            (long) pointTime + staleTime,
+            RETRY_TIME,
+            wrappedConverter.longestWait(),
+            refresher,
+            ticker);
+    this.forecasts =
+        new RefreshingCache<>(
+            MAX_FORECASTS,
+            forecastTime,
+            (long) forecastTime + staleTime,
+            RETRY_TIME,
+            wrappedConverter.longestWait(),
+            refresher,
+            ticker);
     this.cache =
         CacheBuilder.newBuilder()
             // How many entries maximum in the cache?
             .maximumSize(cacheSize)
             // How long should entries remain in the cache?
             .expireAfterWrite(cacheTime, TimeUnit.SECONDS)
+            .ticker(ticker)
             // Keep statistical info around for profiling purposes
             .recordStats()
-            .build(
-                new CacheLoader<Data.WeatherRequest, Data.ForecastAPIPeriod>() {
-                  @Override
-                  public Data.ForecastAPIPeriod load(Data.WeatherRequest key)
-                      throws IOException, ForecastNotFoundInNWSDataException,
-                          TimeNotFoundInNWSDataException {
-                    // If this isn't yet present in the cache, load it:
-                    return wrappedConverter.convertNWSRequest(key);
-                  }
-                });
+            .removalListener(
+                (RemovalNotification<Data.WeatherRequest, Data.ForecastAPIPeriod> removed) -> {
+                  if (removed.getCause() != RemovalCause.REPLACED) index.remove(removed.getKey());
+                })
+            .build();
+  }
+
+  /** two refreshes at a time and a few queued, more are tried again by later requests */
+  private static Executor refresher() {
+    return new ThreadPoolExecutor(
+        2,
+        2,
+        0,
+        TimeUnit.SECONDS,
+        new ArrayBlockingQueue<>(64),
+        runnable -> {
+          Thread thread = new Thread(runnable, "nws-refresh");
+          // the cache never keeps the server running
+          thread.setDaemon(true);
+          return thread;
+        });
   }
 
   /**
@@ -49,68 +154,87 @@ public class CachedNWSRequestConverter {
    *
    * @return local cache
    */
-  public LoadingCache<Data.WeatherRequest, Data.ForecastAPIPeriod> getCache() {
+  public Cache<Data.WeatherRequest, Data.ForecastAPIPeriod> getCache() {
     return cache;
   }
 
   /**
-   * Find points in the cache and get the url, if not found, load into the cache
+   * API counters
    *
-   * @param latLon
-   * @return url
+   * @param points /points calls, stale answers and failed refreshes
+   * @param forecasts forecastHourly calls, stale answers and failed refreshes
+   */
+  public record Stats(RefreshingCache.Stats points, RefreshingCache.Stats forecasts) {}
+
+  /**
+   * Stats getter
+   *
+   * @return the API call counters so far
+   */
+  public Stats stats() {
+    return new Stats(points.stats(), forecasts.stats());
+  }
+
+  /**
+   * Find a cached forecast within 3 miles and an hour of the request, if not found, load it into
+   * the cache
+   *
+   * @param request
+   * @return the forecast period
    * @throws Exception
    */
   public Data.ForecastAPIPeriod convertNWSRequest(Data.WeatherRequest request) throws Exception {
-    Data.ForecastAPIPeriod result = null;
-    boolean hit = false;
-    // System.out.println(latLon.toString());
-    for (Data.WeatherRequest key : cache.asMap().keySet()) {
-      Double latKey = key.lat();
-      Double lonKey = key.lon();
-      double dist = distance(request.lat(), request.lon(), latKey, lonKey);
-      // System.out.println(key.toString());
-      // System.out.println(dist);
-      LocalDateTime timeKey = key.datetime().toLocalDateTime();
-      LocalDateTime reqTime = request.datetime().toLocalDateTime();
-      Duration duration = Duration.between(timeKey, reqTime);
-      // difference of (currTime - responseTime) i in the range of [-1 ~ 1]h
-      boolean timeClose =
-          duration.compareTo(Duration.ofHours(-1)) >= 0
-              && duration.compareTo(Duration.ofHours(1)) <= 0;
-      if (dist <= 3 && timeClose) {
-        hit = true;
-        result = cache.getUnchecked(key);
-        break;
+    try {
+      // a call joined was started at most this long ago too
+      return convertNWSRequestAsync(request)
+          .get(wrappedConverter.longestWait().toMillis(), TimeUnit.MILLISECONDS);
+    } catch (TimeoutException e) {
+      throw new IOException("Timed out waiting for the NWS API", e);
+    } catch (ExecutionException e) {
+      // the call timeout of the caches
+      if (e.getCause() instanceof TimeoutException cause) {
+        throw new IOException("Timed out waiting for the NWS API", cause);
       }
+      if (e.getCause() instanceof Exception cause) throw cause;
+      throw e;
     }
-    if (!hit) result = cache.getUnchecked(request);
-    // System.out.println(cache.stats());
-    return result;
   }
 
-  /** calculate lat lon distance */
-  private double distance(double lat1, double lon1, double lat2, double lon2) {
-    double theta = lon1 - lon2;
-    double dist =
-        Math.sin(deg2rad(lat1)) * Math.sin(deg2rad(lat2))
-            + Math.cos(deg2rad(lat1)) * Math.cos(deg2rad(lat2)) * Math.cos(deg2rad(theta));
-    dist = Math.acos(dist);
-    dist = rad2deg(dist);
-    dist = dist * 60 * 1.1515;
-    return (dist);
-  }
-
-  /*:::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::*/
-  /*::  This function converts decimal degrees to radians             :*/
-  /*:::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::*/
-  private double deg2rad(double deg) {
-    return (deg * Math.PI / 180.0);
-  }
-
-  /*:::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::*/
-  /*::  This function converts radians to decimal degrees             :*/
-  /*:::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::*/
-  private double rad2deg(double rad) {
-    return (rad * 180.0 / Math.PI);
+  /**
+   * Find a cached forecast within 3 miles and an hour of the request, if not found, load it into
+   * the cache, without waiting for the API
+   *
+   * @param request the place and time
+   * @return the forecast period, or the exception convertNWSRequest throws
+   */
+  public CompletableFuture<Data.ForecastAPIPeriod> convertNWSRequestAsync(
+      Data.WeatherRequest request) {
+    Data.WeatherRequest near = index.nearest(request);
+    if (near != null) {
+      Data.ForecastAPIPeriod result = cache.getIfPresent(near);
+      if (result != null) return CompletableFuture.completedFuture(result);
+      // dropped by the cache before it was indexed
+      index.remove(near);
+    }
+    // If this isn't yet present in the cache, look it up in the gridpoint's forecast
+    String point = NWSRequestConverter.point(request.lat(), request.lon());
+    return points
+        .get(point, () -> wrappedConverter.forecastUrlAsync(point))
+        .thenCompose(
+            url ->
+                forecasts.get(
+                    url, () -> wrappedConverter.forecastAsync(url).thenApply(HourlyForecast::of)))
+        .thenApply(
+            forecast -> {
+              Data.ForecastAPIPeriod result;
+              try {
+                result = forecast.period(request.datetime());
+              } catch (TimeNotFoundInNWSDataException e) {
+                throw new CompletionException(e);
+              }
+              cache.put(request, result);
+              index.add(request);
+              return result;
+            });
   }
 }
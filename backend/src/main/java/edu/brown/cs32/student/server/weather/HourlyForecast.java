@@ -0,0 +1,56 @@
+package edu.brown.cs32.student.server.weather;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+
+/**
+ * The forecast periods of a gridpoint, with their times parsed once so that any time they cover is
+ * found without parsing.
+ */
+public final class HourlyForecast {
+  private final List<Data.ForecastAPIPeriod> periods;
+  // epoch seconds, a period covers [start, end)
+  private final long[] starts, ends;
+
+  private HourlyForecast(List<Data.ForecastAPIPeriod> periods, long[] starts, long[] ends) {
+    this.periods = periods;
+    this.starts = starts;
+    this.ends = ends;
+  }
+
+  /**
+   * Parse the periods of a forecast
+   *
+   * @param data the forecast as the API gives it
+   * @return the parsed forecast
+   */
+  public static HourlyForecast of(Data.ForecastAPIData data) {
+    List<Data.ForecastAPIPeriod> periods =
+        data.properties() == null || data.properties().periods() == null
+            ? List.of()
+            : List.copyOf(data.properties().periods());
+    long[] starts = new long[periods.size()], ends = new long[periods.size()];
+    for (int i = 0; i < starts.length; i++) {
+      starts[i] = OffsetDateTime.parse(periods.get(i).startTime()).toEpochSecond();
+      ends[i] = OffsetDateTime.parse(periods.get(i).endTime()).toEpochSecond();
+    }
+    return new HourlyForecast(periods, starts, ends);
+  }
+
+  /**
+   * Find the period a time falls in
+   *
+   * @param datetime the requested time
+   * @return the first period covering it
+   * @throws TimeNotFoundInNWSDataException when no period does
+   */
+  public Data.ForecastAPIPeriod period(OffsetDateTime datetime)
+      throws TimeNotFoundInNWSDataException {
+    long second = datetime.toEpochSecond();
+    for (int i = 0; i < starts.length; i++) {
+      if (starts[i] <= second && second < ends[i]) return periods.get(i);
+    }
+    throw new TimeNotFoundInNWSDataException(
+        "Unable to provide data for requested time: " + datetime.toString());
+  }
+}
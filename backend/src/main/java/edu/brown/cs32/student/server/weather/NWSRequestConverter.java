@@ -1,17 +1,92 @@
 package edu.brown.cs32.student.server.weather;
 
-import com.squareup.moshi.Moshi;
+import com.squareup.moshi.JsonAdapter;
+import edu.brown.cs32.student.server.utils.Codecs;
 import java.io.IOException;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
 import java.text.DecimalFormat;
-import java.time.OffsetDateTime;
-import okio.Buffer;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import okio.BufferedSource;
+import okio.Okio;
 
+/**
+ * Asks the NWS API for the forecast at a place and time.
+ *
+ * <p>This takes two calls: /points gives the hourly forecast url of the gridpoint around a place,
+ * and that url gives the forecast periods of the next days. Each call is its own method, so that
+ * their results can be cached apart.
+ *
+ * <p>Calls go through one HttpClient, which keeps connections open between calls and speaks HTTP/2
+ * where the server does. They return at once with a future: no thread waits for the API to answer,
+ * and a few threads decode each body as it arrives instead of buffering it first. The request
+ * timeout covers the whole call, body included: the body of a call timed out is closed, which frees
+ * the thread decoding it.
+ */
 public class NWSRequestConverter {
+  /** the NWS API */
+  public static final String BASE_URL = "https://api.weather.gov";
+
   private static final DecimalFormat df = new DecimalFormat("0.0000");
 
+  private final String baseUrl;
+  private final Duration requestTimeout;
+  private final ExecutorService executor;
+  private final HttpClient client;
+
+  /** Constructor for the NWS API, waiting up to 5s to connect and 10s for an answer */
+  public NWSRequestConverter() {
+    this(BASE_URL, Duration.ofSeconds(5), Duration.ofSeconds(10), 4);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param baseUrl where the API is, without the trailing slash
+   * @param connectTimeout longest wait to connect
+   * @param requestTimeout longest wait for an answer to a call
+   * @param threads threads of the client, and threads decoding the answers
+   */
+  public NWSRequestConverter(
+      String baseUrl, Duration connectTimeout, Duration requestTimeout, int threads) {
+    if (threads <= 0) {
+      throw new IllegalArgumentException("get threads=" + threads + ", should be positive");
+    }
+    this.baseUrl = baseUrl;
+    this.requestTimeout = requestTimeout;
+    this.executor = daemonPool("nws-decode", threads);
+    this.client =
+        HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .connectTimeout(connectTimeout)
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            // its tasks never block, a few threads serve any number of calls
+            .executor(daemonPool("nws-client", threads))
+            .build();
+  }
+
+  /** the client never keeps the server running */
+  private static ExecutorService daemonPool(String name, int threads) {
+    return Executors.newFixedThreadPool(
+        threads,
+        runnable -> {
+          Thread thread = new Thread(runnable, name);
+          thread.setDaemon(true);
+          return thread;
+        });
+  }
+
   /**
    * convert lat and Lon request to hourly forecast url
    *
@@ -21,53 +96,170 @@ public class NWSRequestConverter {
    */
   public Data.ForecastAPIPeriod convertNWSRequest(Data.WeatherRequest request)
       throws IOException, ForecastNotFoundInNWSDataException, TimeNotFoundInNWSDataException {
-    String addr =
-        "https://api.weather.gov/points/"
-            + df.format(request.lat())
-            + ","
-            + df.format(request.lon());
     try {
-      URL requestURL = new URL(addr);
-      HttpURLConnection clientConnection1 = (HttpURLConnection) requestURL.openConnection();
-      BufferedSource buffer1 = new Buffer().readFrom(clientConnection1.getInputStream());
-      Moshi moshi = new Moshi.Builder().build();
-      Data.PointAPIData pointAPIData = moshi.adapter(Data.PointAPIData.class).fromJson(buffer1);
-      clientConnection1.disconnect();
-
-      if (pointAPIData.properties().forecastHourly() == null) {
-        throw new ForecastNotFoundInNWSDataException(
-            "Unable to provide data for requested URL: " + addr);
-      }
+      return convertNWSRequestAsync(request).get(longestWait().toMillis(), TimeUnit.MILLISECONDS);
+    } catch (TimeoutException e) {
+      throw new IOException("Timed out waiting for the NWS API", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException cause) throw cause;
+      if (e.getCause() instanceof ForecastNotFoundInNWSDataException cause) throw cause;
+      if (e.getCause() instanceof TimeNotFoundInNWSDataException cause) throw cause;
+      throw new IllegalStateException(e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted waiting for the NWS API");
+    }
+  }
 
-      URL requestForecastURL = new URL(pointAPIData.properties().forecastHourly());
-      HttpURLConnection clientConnection2 = (HttpURLConnection) requestForecastURL.openConnection();
-      Data.ForecastAPIData forecastAPIData =
-          moshi
-              .adapter(Data.ForecastAPIData.class)
-              .fromJson(new Buffer().readFrom(clientConnection2.getInputStream()));
-      clientConnection2.disconnect();
-      Data.ForecastAPIPeriod findPeriod = null;
-      for (Data.ForecastAPIPeriod period : forecastAPIData.properties().periods()) {
-        OffsetDateTime startTime = OffsetDateTime.parse(period.startTime());
-        OffsetDateTime endTime = OffsetDateTime.parse(period.endTime());
-        if (fallIntoRange(startTime, endTime, request.datetime())) {
-          findPeriod = period;
-          break;
-        }
-      }
-      if (findPeriod == null) {
-        throw new TimeNotFoundInNWSDataException(
-            "Unable to provide data for requested time: " + request.datetime().toString());
+  /**
+   * Longest wait for a forecast period: each call times out on its own, this is a bound in case one
+   * is not
+   *
+   * @return twice the request timeout and a second, for the two calls in a row
+   */
+  public Duration longestWait() {
+    return requestTimeout.multipliedBy(2).plusSeconds(1);
+  }
+
+  /**
+   * Find the forecast period of a request, without waiting for it
+   *
+   * @param request the place and time
+   * @return the period, or the exception convertNWSRequest throws
+   */
+  public CompletableFuture<Data.ForecastAPIPeriod> convertNWSRequestAsync(
+      Data.WeatherRequest request) {
+    return forecastUrlAsync(point(request.lat(), request.lon()))
+        .thenCompose(this::forecastAsync)
+        .thenApply(forecast -> period(HourlyForecast.of(forecast), request));
+  }
+
+  /**
+   * The place as /points takes it
+   *
+   * @param lat latitude
+   * @param lon longitude
+   * @return the place rounded to 4 decimals, "lat,lon"
+   */
+  public static String point(double lat, double lon) {
+    // DecimalFormat is not thread-safe
+    synchronized (df) {
+      return df.format(lat) + "," + df.format(lon);
+    }
+  }
+
+  /**
+   * Get the hourly forecast url of the gridpoint around a place
+   *
+   * @param point the place, as made by point
+   * @return the forecastHourly url, or an IOException when the API cannot be read, or a
+   *     ForecastNotFoundInNWSDataException when the API has no forecast there
+   */
+  public CompletableFuture<String> forecastUrlAsync(String point) {
+    String addr = baseUrl + "/points/" + point;
+    return get(addr, Codecs.POINT_API_DATA)
+        .thenApply(
+            pointAPIData -> {
+              if (pointAPIData.properties() == null
+                  || pointAPIData.properties().forecastHourly() == null) {
+                throw new CompletionException(
+                    new ForecastNotFoundInNWSDataException(
+                        "Unable to provide data for requested URL: " + addr));
+              }
+              return pointAPIData.properties().forecastHourly();
+            });
+  }
+
+  /**
+   * Get the hourly forecast of a gridpoint
+   *
+   * @param url the forecastHourly url
+   * @return every forecast period, or an IOException when the API cannot be read
+   */
+  public CompletableFuture<Data.ForecastAPIData> forecastAsync(String url) {
+    return get(url, Codecs.FORECAST_API_DATA);
+  }
+
+  /**
+   * send a GET and decode the Json answer while it is read. Decoding blocks for the body, so it is
+   * not done on the client's own threads, which deliver the body. The request timeout by itself
+   * only bounds the wait for the headers, so the whole call is timed out here.
+   */
+  private <T> CompletableFuture<T> get(String url, JsonAdapter<T> adapter) {
+    HttpRequest request;
+    try {
+      request =
+          HttpRequest.newBuilder(URI.create(url))
+              .timeout(requestTimeout)
+              .header("Accept", "application/geo+json")
+              .GET()
+              .build();
+    } catch (IllegalArgumentException e) {
+      return CompletableFuture.failedFuture(
+          new IOException("Unable to provide data for requested URL: " + url));
+    }
+    CompletableFuture<HttpResponse<InputStream>> sent =
+        client.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream());
+    return sent.thenApplyAsync(response -> decode(url, response, adapter), executor)
+        .copy()
+        .orTimeout(requestTimeout.toMillis(), TimeUnit.MILLISECONDS)
+        .whenComplete(
+            (value, e) -> {
+              if (e != null) abandon(sent);
+            })
+        .exceptionally(
+            e -> {
+              Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+              if (cause instanceof TimeoutException) {
+                cause = new HttpTimeoutException("request timed out reading the body");
+              }
+              if (cause instanceof IOException) {
+                // the message the handler shows, whatever went wrong on the way
+                throw new CompletionException(
+                    new IOException("Unable to provide data for requested URL: " + url, cause));
+              }
+              throw e instanceof CompletionException c ? c : new CompletionException(cause);
+            });
+  }
+
+  /**
+   * stop a call that failed or timed out: before the headers the exchange is cancelled, after them
+   * the body is closed, which ends a read waiting on it
+   */
+  private static void abandon(CompletableFuture<HttpResponse<InputStream>> sent) {
+    sent.cancel(true);
+    sent.thenAccept(
+        response -> {
+          try {
+            response.body().close();
+          } catch (IOException e) {
+            // closed already
+          }
+        });
+  }
+
+  private static <T> T decode(
+      String url, HttpResponse<InputStream> response, JsonAdapter<T> adapter) {
+    try (BufferedSource body = Okio.buffer(Okio.source(response.body()))) {
+      T value = response.statusCode() == 200 ? adapter.fromJson(body) : null;
+      // a connection goes back to the pool only once its body is read to the end
+      body.readAll(Okio.blackhole());
+      if (response.statusCode() != 200) {
+        throw new IOException("get status=" + response.statusCode() + " from " + url);
       }
-      return findPeriod;
+      if (value == null) throw new IOException("get null from " + url);
+      return value;
     } catch (IOException e) {
-      throw new IOException("Unable to provide data for requested URL: " + addr);
-    } catch (ForecastNotFoundInNWSDataException | TimeNotFoundInNWSDataException e) {
-      throw e;
+      throw new CompletionException(e);
     }
   }
 
-  private boolean fallIntoRange(OffsetDateTime start, OffsetDateTime end, OffsetDateTime req) {
-    return req.isEqual(start) || (req.isAfter(start) && req.isBefore(end));
+  private static Data.ForecastAPIPeriod period(
+      HourlyForecast forecast, Data.WeatherRequest request) {
+    try {
+      return forecast.period(request.datetime());
+    } catch (TimeNotFoundInNWSDataException e) {
+      throw new CompletionException(e);
+    }
   }
 }
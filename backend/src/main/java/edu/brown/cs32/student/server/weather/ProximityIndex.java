@@ -0,0 +1,133 @@
+package edu.brown.cs32.student.server.weather;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cached weather requests bucketed by place and hour, to find one near a new request.
+ *
+ * <p>Latitude and longitude are cut into cells as wide as the match radius, and time into hours.
+ * Any request within the radius and the hour window lies in a neighbouring cell of a neighbouring
+ * hour, so a lookup probes a few buckets instead of every cached request, and only measures the
+ * distance to the requests found there. Every bucket is an immutable list replaced on change, so
+ * lookups take no lock.
+ */
+class ProximityIndex {
+  /** miles in a degree of latitude, as the distance formula counts them */
+  static final double MILES_PER_DEGREE = 60 * 1.1515;
+
+  private final double radius;
+  private final long window;
+  // degrees of latitude in the radius, the side of a cell
+  private final double cell;
+  private final ConcurrentHashMap<Bucket, List<Data.WeatherRequest>> buckets =
+      new ConcurrentHashMap<>();
+
+  private record Bucket(long lat, long lon, long hour) {}
+
+  /**
+   * Constructor
+   *
+   * @param radius most miles between a request and the one it matches
+   * @param window most seconds between a request and the one it matches, at most an hour
+   */
+  ProximityIndex(double radius, long window) {
+    if (radius <= 0) {
+      throw new IllegalArgumentException("get radius=" + radius + ", should be positive");
+    }
+    if (window < 0 || window > 3600) {
+      throw new IllegalArgumentException("get window=" + window + ", should be in [0, 3600]");
+    }
+    this.radius = radius;
+    this.window = window;
+    this.cell = radius / MILES_PER_DEGREE;
+  }
+
+  void add(Data.WeatherRequest request) {
+    buckets.compute(
+        bucket(request),
+        (bucket, requests) -> {
+          if (requests == null) return List.of(request);
+          if (requests.contains(request)) return requests;
+          List<Data.WeatherRequest> added = new ArrayList<>(requests);
+          added.add(request);
+          return List.copyOf(added);
+        });
+  }
+
+  void remove(Data.WeatherRequest request) {
+    buckets.computeIfPresent(
+        bucket(request),
+        (bucket, requests) -> {
+          List<Data.WeatherRequest> kept = new ArrayList<>(requests);
+          kept.remove(request);
+          // an empty bucket is dropped
+          return kept.isEmpty() ? null : List.copyOf(kept);
+        });
+  }
+
+  int size() {
+    int size = 0;
+    for (List<Data.WeatherRequest> requests : buckets.values()) size += requests.size();
+    return size;
+  }
+
+  /**
+   * Find the nearest indexed request within the radius and the window
+   *
+   * @param request the new request
+   * @return the nearest match, null when there is none
+   */
+  Data.WeatherRequest nearest(Data.WeatherRequest request) {
+    double lat = request.lat(), lon = request.lon();
+    long second = request.datetime().toEpochSecond();
+    // a degree of longitude shrinks away from the equator, take the widest span in the radius
+    double edge = Math.min(89.9, Math.abs(lat) + cell);
+    double lonSpan = cell / Math.cos(Math.toRadians(edge));
+    long hour = Math.floorDiv(second, 3600);
+    Data.WeatherRequest nearest = null;
+    double nearestDist = Double.MAX_VALUE;
+    for (long h = hour - 1; h <= hour + 1; h++) {
+      for (long y = index(lat - cell); y <= index(lat + cell); y++) {
+        for (long x = index(lon - lonSpan); x <= index(lon + lonSpan); x++) {
+          List<Data.WeatherRequest> requests = buckets.get(new Bucket(y, x, h));
+          if (requests == null) continue;
+          for (Data.WeatherRequest candidate : requests) {
+            if (Math.abs(candidate.datetime().toEpochSecond() - second) > window) continue;
+            double dist = distance(lat, lon, candidate.lat(), candidate.lon());
+            if (dist <= radius && dist < nearestDist) {
+              nearest = candidate;
+              nearestDist = dist;
+            }
+          }
+        }
+      }
+    }
+    return nearest;
+  }
+
+  private Bucket bucket(Data.WeatherRequest request) {
+    return new Bucket(
+        index(request.lat()),
+        index(request.lon()),
+        Math.floorDiv(request.datetime().toEpochSecond(), 3600));
+  }
+
+  private long index(double degrees) {
+    return (long) Math.floor(degrees / cell);
+  }
+
+  /** great-circle distance in miles */
+  static double distance(double lat1, double lon1, double lat2, double lon2) {
+    double theta = lon1 - lon2;
+    double dist =
+        Math.sin(Math.toRadians(lat1)) * Math.sin(Math.toRadians(lat2))
+            + Math.cos(Math.toRadians(lat1))
+                * Math.cos(Math.toRadians(lat2))
+                * Math.cos(Math.toRadians(theta));
+    // rounding can take the cosine of a zero angle past 1
+    dist = Math.acos(Math.min(1, dist));
+    return Math.toDegrees(dist) * MILES_PER_DEGREE;
+  }
+}
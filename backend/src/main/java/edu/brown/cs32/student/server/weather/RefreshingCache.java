@@ -0,0 +1,188 @@
+package edu.brown.cs32.student.server.weather;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import edu.brown.cs32.student.server.utils.SingleFlight;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * API answers by key, served stale while they are fetched again.
+ *
+ * <p>An answer is fresh for a soft TTL. Past it, it is still served at once and one refresh is sent
+ * on a bounded executor, replacing the answer when it succeeds. An answer is dropped a hard TTL
+ * after it was last fetched. So while the API is slow or failing, the answers it last gave keep
+ * being served until the hard TTL, and only a missing answer makes its callers wait, sharing one
+ * call per key.
+ *
+ * <p>A call to the API fails after a call timeout, so neither a refresh nor the callers sharing a
+ * call wait on a hung API. Once a refresh fails, its key is not refreshed again until a retry time
+ * has passed, so an API that is down gets one call per key per retry time rather than one per
+ * request.
+ */
+public class RefreshingCache<V> {
+  private static final class Entry<V> {
+    final V value;
+    final long fetched;
+    // no refresh before this, set when one fails
+    volatile long retryAt;
+
+    Entry(V value, long fetched) {
+      this.value = value;
+      this.fetched = fetched;
+      this.retryAt = fetched;
+    }
+  }
+
+  private final Cache<String, Entry<V>> cache;
+  private final SingleFlight<String, V> calls = new SingleFlight<>();
+  private final Ticker ticker;
+  private final long softNanos;
+  private final long retryNanos;
+  private final Duration callTimeout;
+  private final Executor refresher;
+  // keys with a refresh queued or running
+  private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+  // calls that reached the API, which the SingleFlight cannot tell from a double-checked hit
+  private final AtomicLong fetches = new AtomicLong();
+  private final AtomicLong staleHits = new AtomicLong();
+  private final AtomicLong refreshFailures = new AtomicLong();
+
+  /**
+   * Counters
+   *
+   * @param calls API calls started, and callers that joined one
+   * @param staleHits answers served past the soft TTL
+   * @param refreshFailures refreshes that failed, timed out or were turned away by the executor
+   */
+  public record Stats(SingleFlight.Stats calls, long staleHits, long refreshFailures) {}
+
+  /**
+   * Constructor
+   *
+   * @param maxSize most answers kept
+   * @param softTime seconds an answer is fresh
+   * @param hardTime seconds an answer is kept after it was fetched, at least softTime
+   * @param retryTime seconds before a key whose refresh failed is refreshed again
+   * @param callTimeout longest wait for an API call
+   * @param refresher runs the refreshes, bounded, a refresh it rejects is tried again later
+   * @param ticker the clock
+   */
+  public RefreshingCache(
+      long maxSize,
+      long softTime,
+      long hardTime,
+      long retryTime,
+      Duration callTimeout,
+      Executor refresher,
+      Ticker ticker) {
+    if (softTime <= 0 || hardTime < softTime) {
+      throw new IllegalArgumentException(
+          "get softTime=" + softTime + ", hardTime=" + hardTime + ", should be 0 < soft <= hard");
+    }
+    if (retryTime < 0) {
+      throw new IllegalArgumentException("get retryTime=" + retryTime + ", should be at least 0");
+    }
+    this.cache =
+        CacheBuilder.newBuilder()
+            .maximumSize(maxSize)
+            .expireAfterWrite(hardTime, TimeUnit.SECONDS)
+            .ticker(ticker)
+            .recordStats()
+            .build();
+    this.softNanos = TimeUnit.SECONDS.toNanos(softTime);
+    this.retryNanos = TimeUnit.SECONDS.toNanos(retryTime);
+    this.callTimeout = callTimeout;
+    this.refresher = refresher;
+    this.ticker = ticker;
+  }
+
+  /**
+   * Get an answer, fetching it when there is none
+   *
+   * @param key what is asked
+   * @param fetch starts an API call for the key
+   * @return the answer kept, or the answer of the call
+   */
+  public CompletableFuture<V> get(String key, Supplier<CompletableFuture<V>> fetch) {
+    Entry<V> entry = cache.getIfPresent(key);
+    if (entry != null) {
+      long now = ticker.read();
+      if (now - entry.fetched >= softNanos) {
+        staleHits.incrementAndGet();
+        if (now - entry.retryAt >= 0) refresh(key, entry, fetch);
+      }
+      return CompletableFuture.completedFuture(entry.value);
+    }
+    return calls.submit(
+        key,
+        () -> {
+          // a call that ended between the lookup and this one put it already
+          Entry<V> cached = cache.getIfPresent(key);
+          if (cached != null) return CompletableFuture.completedFuture(cached.value);
+          return fetch(key, fetch);
+        });
+  }
+
+  private CompletableFuture<V> fetch(String key, Supplier<CompletableFuture<V>> fetch) {
+    fetches.incrementAndGet();
+    return fetch
+        .get()
+        .copy()
+        .orTimeout(callTimeout.toMillis(), TimeUnit.MILLISECONDS)
+        .thenApply(
+            value -> {
+              cache.put(key, new Entry<>(value, ticker.read()));
+              return value;
+            });
+  }
+
+  private void refresh(String key, Entry<V> stale, Supplier<CompletableFuture<V>> fetch) {
+    if (!refreshing.add(key)) return;
+    try {
+      refresher.execute(
+          () -> {
+            try {
+              // waiting here holds a thread of the executor, which bounds the refreshes running,
+              // and the call times out, so not for long
+              calls.submit(key, () -> fetch(key, fetch)).join();
+            } catch (CompletionException | CancellationException e) {
+              failed(stale);
+            } finally {
+              refreshing.remove(key);
+            }
+          });
+    } catch (RejectedExecutionException e) {
+      failed(stale);
+      refreshing.remove(key);
+    }
+  }
+
+  /** the stale answer stays until the hard TTL, and is not refreshed again for a while */
+  private void failed(Entry<V> stale) {
+    refreshFailures.incrementAndGet();
+    stale.retryAt = ticker.read() + retryNanos;
+  }
+
+  /**
+   * Stats getter
+   *
+   * @return the counters so far
+   */
+  public Stats stats() {
+    return new Stats(
+        new SingleFlight.Stats(fetches.get(), calls.stats().coalesced()),
+        staleHits.get(),
+        refreshFailures.get());
+  }
+}
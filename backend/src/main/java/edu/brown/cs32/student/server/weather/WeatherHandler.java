@@ -1,8 +1,8 @@
 package edu.brown.cs32.student.server.weather;
 
-import com.google.common.util.concurrent.UncheckedExecutionException;
 import edu.brown.cs32.student.server.GeneralResponse;
 import edu.brown.cs32.student.server.MissingArgException;
+import java.io.IOException;
 import java.time.OffsetDateTime;
 import java.time.format.DateTimeParseException;
 import java.util.*;
@@ -17,7 +17,8 @@ public class WeatherHandler implements Route {
 
   /** constructor */
   public WeatherHandler() {
-    cachedNWSRequestConverter = new CachedNWSRequestConverter(new NWSRequestConverter(), 10, 60);
+    cachedNWSRequestConverter =
+        new CachedNWSRequestConverter(new NWSRequestConverter(), 50_000, 60);
   }
 
   /**
@@ -50,6 +51,8 @@ public class WeatherHandler implements Route {
       }
       Data.WeatherRequest weatherRequest =
           new Data.WeatherRequest(Double.parseDouble(lat), Double.parseDouble(lon), reqTime);
+      // Spark writes the response once this returns, so wait here; the API is called on the
+      // client's threads, and misses of one gridpoint wait on the same call
       Data.ForecastAPIPeriod findPeriod =
           cachedNWSRequestConverter.convertNWSRequest(weatherRequest);
       Data.StringWeatherRequest stringWeatherRequest =
@@ -82,9 +85,9 @@ public class WeatherHandler implements Route {
     } catch (MissingArgException e) {
       responseMap.put("result", "error_bad_request");
       responseMap.put("detail", e.getMessage());
-    } catch (UncheckedExecutionException e) {
+    } catch (IOException e) {
       responseMap.put("result", "error_datasource");
-      responseMap.put("detail", e.getMessage().split(":", 2)[1].trim());
+      responseMap.put("detail", e.getMessage());
     } catch (NumberFormatException e) {
       responseMap.put("result", "error_datasource");
       responseMap.put("detail", "lat=" + lat + ", lon=" + lon + " cannot be converted to numbers");
@@ -0,0 +1,146 @@
+package edu.brown.cs32.student.csv.parser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.brown.cs32.student.csv.creator.CreatorFromRow;
+import edu.brown.cs32.student.csv.creator.Star;
+import edu.brown.cs32.student.csv.creator.StarCreator;
+import edu.brown.cs32.student.csv.creator.StringListCreator;
+import edu.brown.cs32.student.csv.exception.FactoryFailureException;
+import edu.brown.cs32.student.csv.exception.UncheckedCSVException;
+import edu.brown.cs32.student.csv.exception.WrongFormatCSVException;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+/** Check that the streaming ways give the rows parse gives, reading no more than they need */
+public class CSVParserTest {
+  private static final String CSV =
+      "StarID,ProperName,X,Y,Z\n"
+          + "0,Sol,0,0,0\n"
+          + "1,,282.43485,0.00449,5.36884\n"
+          + "70667,Proxima Centauri,-0.47175,-0.36132,-1.15037\n"
+          + "87666,Barnard's Star,-0.01729,-1.81533,0.14824\n";
+
+  /** counts the chars handed out */
+  private static final class CountingReader extends Reader {
+    private final Reader reader;
+    int read;
+
+    CountingReader(String text) {
+      this.reader = new StringReader(text);
+    }
+
+    @Override
+    public int read(char[] buf, int off, int len) throws IOException {
+      int n = reader.read(buf, off, len);
+      if (n > 0) read += n;
+      return n;
+    }
+
+    @Override
+    public void close() {}
+  }
+
+  private static CSVParser<List<String>> parser(String csv, boolean header) {
+    return new CSVParser<>(header, new StringReader(csv), new StringListCreator());
+  }
+
+  @Test
+  void testSameRows() throws Exception {
+    for (boolean header : new boolean[] {true, false}) {
+      List<List<String>> expected = parser(CSV, header).parse(new ArrayList<>(), new ArrayList<>());
+
+      List<List<String>> iterated = new ArrayList<>();
+      parser(CSV, header).iterator().forEachRemaining(iterated::add);
+      assertEquals(expected, iterated);
+
+      assertEquals(expected, parser(CSV, header).stream().collect(Collectors.toList()));
+
+      List<List<String>> pushed = new ArrayList<>();
+      parser(CSV, header).forEach(pushed::add);
+      assertEquals(expected, pushed);
+    }
+    CSVParser<List<String>> parser = parser(CSV, true);
+    assertEquals(5, parser.getColumnCount());
+    assertEquals(List.of("StarID", "ProperName", "X", "Y", "Z"), parser.getHeader());
+    assertEquals(-1, parser("", true).getColumnCount());
+    Iterator<List<String>> empty = parser("", false).iterator();
+    assertFalse(empty.hasNext());
+    assertThrows(NoSuchElementException.class, empty::next);
+  }
+
+  /** a creator of Lists only may keep the row it is given */
+  @Test
+  void testKeptRows() throws Exception {
+    CreatorFromRow<List<String>> keeping = row -> row;
+    List<List<String>> expected = parser(CSV, true).parse(new ArrayList<>(), new ArrayList<>());
+    assertEquals(
+        expected,
+        new CSVParser<>(true, new StringReader(CSV), keeping)
+            .parse(new ArrayList<>(), new ArrayList<>()));
+  }
+
+  /** a long file is only read as far as the rows taken */
+  @Test
+  void testEarlyStop() throws Exception {
+    StringBuilder csv = new StringBuilder("a,b\n");
+    for (int i = 0; i < 100_000; i++) csv.append(i).append(",x\n");
+    CountingReader reader = new CountingReader(csv.toString());
+    CSVParser<List<String>> parser = new CSVParser<>(true, reader, new StringListCreator());
+    assertEquals(
+        List.of("9", "x"),
+        parser.stream().filter(row -> row.get(0).endsWith("9")).findFirst().get());
+    assertTrue(reader.read < csv.length() / 4, "read " + reader.read);
+
+    List<String> seen = new ArrayList<>();
+    parser.forEach(row -> seen.add(row.get(0)) && seen.size() < 3);
+    assertEquals(List.of("10", "11", "12"), seen);
+  }
+
+  /** StarCreator reads the numbers in place and makes the stars the String way makes */
+  @Test
+  void testStars() throws Exception {
+    StarCreator stars = new StarCreator();
+    List<Star> expected =
+        new CSVParser<Star>(true, new StringReader(CSV), row -> stars.create(row))
+            .parse(new ArrayList<>(), new ArrayList<>());
+    assertEquals(
+        expected,
+        new CSVParser<>(true, new StringReader(CSV), stars)
+            .parse(new ArrayList<>(), new ArrayList<>()));
+    assertEquals(4, expected.size());
+    assertEquals(
+        new Star(70667, "Proxima Centauri", -0.47175, -0.36132, -1.15037), expected.get(2));
+  }
+
+  @Test
+  void testErrors() {
+    UncheckedCSVException e =
+        assertThrows(
+            UncheckedCSVException.class,
+            () -> parser(CSV + "1,2\n", true).stream().forEach(row -> {}));
+    assertTrue(e.getCause() instanceof WrongFormatCSVException);
+    assertEquals("Wrong CSV data format! Line 6 has 2 columns, but should be 5", e.getMessage());
+
+    Iterator<?> failing =
+        new CSVParser<>(
+                true,
+                new StringReader(CSV),
+                row -> {
+                  throw new FactoryFailureException("no", row);
+                })
+            .iterator();
+    e = assertThrows(UncheckedCSVException.class, failing::hasNext);
+    assertTrue(e.getCause() instanceof FactoryFailureException);
+  }
+}
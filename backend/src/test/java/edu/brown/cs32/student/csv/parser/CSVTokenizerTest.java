@@ -0,0 +1,191 @@
+package edu.brown.cs32.student.csv.parser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import edu.brown.cs32.student.csv.exception.WrongFormatCSVException;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/** Check records, cells and line numbers of the tokenizer, also when the text comes in bits */
+public class CSVTokenizerTest {
+  /** gives at most one char per read, so every record is refilled many times */
+  private static final class TrickleReader extends Reader {
+    private final Reader reader;
+
+    TrickleReader(String text) {
+      this.reader = new StringReader(text);
+    }
+
+    @Override
+    public int read(char[] buf, int off, int len) throws IOException {
+      return reader.read(buf, off, Math.min(len, 1));
+    }
+
+    @Override
+    public void close() {}
+  }
+
+  private static List<List<String>> records(Reader reader, List<Integer> lines) throws Exception {
+    CSVTokenizer tokenizer = new CSVTokenizer(reader);
+    List<List<String>> records = new ArrayList<>();
+    while (tokenizer.next()) {
+      records.add(new ArrayList<>(tokenizer.asList()));
+      lines.add(tokenizer.line());
+    }
+    return records;
+  }
+
+  private static void check(String text, List<List<String>> expected, List<Integer> expectedLines)
+      throws Exception {
+    for (Reader reader : List.of(new StringReader(text), new TrickleReader(text))) {
+      List<Integer> lines = new ArrayList<>();
+      assertEquals(expected, records(reader, lines));
+      assertEquals(expectedLines, lines);
+    }
+    List<Integer> lines = new ArrayList<>();
+    CSVTokenizer tokenizer = new CSVTokenizer(text.toCharArray(), text.length());
+    List<List<String>> records = new ArrayList<>();
+    while (tokenizer.next()) {
+      records.add(new ArrayList<>(tokenizer.asList()));
+      lines.add(tokenizer.line());
+    }
+    assertEquals(expected, records);
+    assertEquals(expectedLines, lines);
+  }
+
+  @Test
+  void testPlain() throws Exception {
+    check(
+        "a,b,c\n1,2,3\r\n\n4,,\r5,6,7",
+        List.of(
+            List.of("a", "b", "c"),
+            List.of("1", "2", "3"),
+            List.of(""),
+            List.of("4", "", ""),
+            List.of("5", "6", "7")),
+        List.of(1, 2, 3, 4, 5));
+    check("", List.of(), List.of());
+    check("\n", List.of(List.of("")), List.of(1));
+    check(",\n", List.of(List.of("", "")), List.of(1));
+  }
+
+  @Test
+  void testQuoted() throws Exception {
+    check(
+        "\"a,b\",\"say \"\"hi\"\"\",\"\"\n\"two\r\nlines\n\",x\n\"\",\"\"\"\"\ny,z",
+        List.of(
+            List.of("a,b", "say \"hi\"", ""),
+            List.of("two\r\nlines\n", "x"),
+            List.of("", "\""),
+            List.of("y", "z")),
+        List.of(1, 2, 5, 6));
+  }
+
+  @Test
+  void testStrayQuotes() throws Exception {
+    CSVTokenizer tokenizer = new CSVTokenizer(new StringReader("5'3\",\"a\"b,x\"\"\n"));
+    tokenizer.next();
+    assertEquals(List.of("5'3\"", "ab", "x\"\""), tokenizer.asList());
+    assertEquals(3, tokenizer.strayQuotes());
+  }
+
+  @Test
+  void testUnclosedQuote() throws Exception {
+    CSVTokenizer tokenizer = new CSVTokenizer(new StringReader("a\n\"b\nc,d\n"));
+    tokenizer.next();
+    WrongFormatCSVException e = assertThrows(WrongFormatCSVException.class, tokenizer::next);
+    assertEquals("Wrong CSV data format! Line 2 has an unclosed quote", e.getMessage());
+  }
+
+  @Test
+  void testCells() throws Exception {
+    String longCell = "x".repeat(200_000);
+    CSVTokenizer tokenizer = new CSVTokenizer(new StringReader("ab,\"c\"\"d\"\n" + longCell));
+    tokenizer.next();
+    CharSequence cell = tokenizer.getCharSequence(1);
+    assertEquals(3, cell.length());
+    assertEquals('"', cell.charAt(1));
+    assertEquals("\"d", cell.subSequence(1, 3).toString());
+    assertEquals("ab", tokenizer.getCharSequence(0).toString());
+    tokenizer.next();
+    assertEquals(longCell, tokenizer.getString(0));
+    assertThrows(IndexOutOfBoundsException.class, () -> tokenizer.getCharSequence(1));
+  }
+
+  /** the value or the exception a parse gives */
+  private static Object outcome(java.util.concurrent.Callable<Object> parse) {
+    try {
+      Object value = parse.call();
+      // tells -0.0 from 0.0 and compares NaN
+      return value instanceof Double d ? Double.doubleToRawLongBits(d) : value;
+    } catch (Exception e) {
+      return e.getClass();
+    }
+  }
+
+  @Test
+  void testNumbers() throws Exception {
+    List<String> cells =
+        new ArrayList<>(
+            List.of(
+                "",
+                "-",
+                "+",
+                "0",
+                "-0",
+                "+7",
+                "2147483647",
+                "2147483648",
+                "-2147483648",
+                "-2147483649",
+                "00012",
+                "9223372036854775807",
+                "9223372036854775808",
+                "1e5",
+                " 1",
+                "1 ",
+                "1.5",
+                ".5",
+                "5.",
+                ".",
+                "-.",
+                "-0.0",
+                "0.1",
+                "-282.43485",
+                "123456789012345",
+                "1234567890123456",
+                "9.999999999999999",
+                "0.000000000000001",
+                "NaN",
+                "Infinity",
+                "0x10",
+                "\u0661\u0662",
+                "1.2.3",
+                "1d",
+                "--1",
+                "+-1"));
+    Random random = new Random(18);
+    for (int i = 0; i < 2000; i++) {
+      cells.add(Double.toString(random.nextDouble() * Math.pow(10, random.nextInt(12) - 4)));
+      cells.add(random.nextInt(2_000_000) / Math.pow(10, random.nextInt(8)) + "");
+      cells.add(String.format("%." + random.nextInt(10) + "f", random.nextGaussian() * 1000));
+      cells.add(Long.toString(random.nextLong() >> random.nextInt(64)));
+    }
+    StringBuilder csv = new StringBuilder();
+    for (String cell : cells) csv.append(cell).append('\n');
+    CSVTokenizer tokenizer = new CSVTokenizer(new StringReader(csv.toString()));
+    for (String cell : cells) {
+      tokenizer.next();
+      assertEquals(outcome(() -> Integer.parseInt(cell)), outcome(() -> tokenizer.getInt(0)), cell);
+      assertEquals(outcome(() -> Long.parseLong(cell)), outcome(() -> tokenizer.getLong(0)), cell);
+      assertEquals(
+          outcome(() -> Double.parseDouble(cell)), outcome(() -> tokenizer.getDouble(0)), cell);
+    }
+  }
+}
@@ -0,0 +1,160 @@
+package edu.brown.cs32.student.csv.parser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import edu.brown.cs32.student.csv.creator.CreatorFromRow;
+import edu.brown.cs32.student.csv.creator.StringListCreator;
+import edu.brown.cs32.student.csv.exception.FactoryFailureException;
+import edu.brown.cs32.student.csv.exception.WrongFormatCSVException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Check that the parallel parser gives the rows and errors of CSVParser, over many small ranges */
+public class ParallelCSVParserTest {
+  @TempDir Path dir;
+
+  private static final String[] CELLS = {
+    "Sol",
+    "0",
+    "-1.5",
+    "Émile",
+    "東京",
+    " a b ",
+    "",
+    "\"a,b\"",
+    "\"say \"\"hi\"\"\"",
+    "\"two\nlines\r\n\""
+  };
+
+  /** the header and rows records, each with its line break */
+  private static List<String> randomRecords(Random random, int rows, String... extra) {
+    String[] ends = {"\n", "\r\n", "\r"};
+    List<String> records = new ArrayList<>(List.of("id,name,value\n"));
+    for (int i = 0; i < rows; i++) {
+      String last =
+          random.nextInt(50) < extra.length
+              ? extra[random.nextInt(extra.length)]
+              : CELLS[random.nextInt(CELLS.length)];
+      records.add(
+          i
+              + ","
+              + CELLS[random.nextInt(CELLS.length)]
+              + ","
+              + last
+              + ends[random.nextInt(ends.length)]);
+    }
+    return records;
+  }
+
+  private static String randomCSV(Random random, int rows, String... extra) {
+    return String.join("", randomRecords(random, rows, extra));
+  }
+
+  private Path write(String csv) throws Exception {
+    Path file = Files.createTempFile(dir, "test", ".csv");
+    Files.writeString(file, csv, StandardCharsets.UTF_8);
+    return file;
+  }
+
+  private static <T> List<T> serial(String csv, boolean hasHead, CreatorFromRow<T> creator)
+      throws Exception {
+    return new CSVParser<>(hasHead, new StringReader(csv), creator)
+        .parse(new ArrayList<>(), new ArrayList<>());
+  }
+
+  private static <T> List<T> parallel(Path file, boolean hasHead, CreatorFromRow<T> creator)
+      throws Exception {
+    return new ParallelCSVParser<>(hasHead, file, creator, 3)
+        .parse(new ArrayList<>(), new ArrayList<>());
+  }
+
+  @Test
+  void testSameRows() throws Exception {
+    Random random = new Random(15);
+    for (int rows : new int[] {0, 1, 2, 5, 40, 1000}) {
+      String csv = randomCSV(random, rows);
+      for (String text : List.of(csv, csv.stripTrailing())) {
+        Path file = write(text);
+        for (boolean hasHead : new boolean[] {true, false}) {
+          assertEquals(
+              serial(text, hasHead, new StringListCreator()),
+              parallel(file, hasHead, new StringListCreator()));
+        }
+        List<String> header = new ArrayList<>();
+        new ParallelCSVParser<>(true, file, new StringListCreator(), 3)
+            .parse(new ArrayList<>(), header);
+        assertEquals(List.of("id", "name", "value"), header);
+        assertEquals(
+            new CSVParser<>(true, new StringReader(text), new StringListCreator())
+                .parseTable()
+                .rows(),
+            new ParallelCSVParser<>(true, file, new StringListCreator(), 3).parseTable().rows());
+      }
+    }
+    assertEquals(List.of(), parallel(write(""), true, new StringListCreator()));
+  }
+
+  /** quotes inside unquoted cells do not pair up, the rows are still the same */
+  @Test
+  void testStrayQuotes() throws Exception {
+    Random random = new Random(18);
+    for (int rows : new int[] {1, 40, 1000}) {
+      String csv = randomCSV(random, rows, "5'3\"", "\"a\"b\"", "x\"\"");
+      Path file = write(csv);
+      for (boolean hasHead : new boolean[] {true, false}) {
+        assertEquals(
+            serial(csv, hasHead, new StringListCreator()),
+            parallel(file, hasHead, new StringListCreator()));
+      }
+      String strayHeader = "i\"d,name,value\n" + csv.substring(csv.indexOf('\n') + 1);
+      assertEquals(
+          serial(strayHeader, true, new StringListCreator()),
+          parallel(write(strayHeader), true, new StringListCreator()));
+    }
+    Path unclosed = write("a,b\n1,2\n3,\"4\n5,6\n");
+    WrongFormatCSVException e =
+        assertThrows(
+            WrongFormatCSVException.class, () -> parallel(unclosed, true, new StringListCreator()));
+    assertEquals("Wrong CSV data format! Line 3 has an unclosed quote", e.getMessage());
+  }
+
+  @Test
+  void testWrongFormatLine() throws Exception {
+    Random random = new Random(16);
+    // the bad record comes after quoted line breaks, which count as lines
+    for (int bad : new int[] {2, 3, 17, 500, 1001}) {
+      List<String> records = randomRecords(random, 1000);
+      records.set(bad - 1, "too,many,cells,here\n");
+      String csv = String.join("", records);
+      Path file = write(csv);
+      WrongFormatCSVException expected =
+          assertThrows(
+              WrongFormatCSVException.class, () -> serial(csv, true, new StringListCreator()));
+      WrongFormatCSVException actual =
+          assertThrows(
+              WrongFormatCSVException.class, () -> parallel(file, true, new StringListCreator()));
+      assertEquals(expected.getMessage(), actual.getMessage());
+    }
+  }
+
+  @Test
+  void testCreatorFailure() throws Exception {
+    CreatorFromRow<String> creator =
+        row -> {
+          if (row.get(0).equals("613")) throw new FactoryFailureException("bad id", row);
+          return row.get(0);
+        };
+    Path file = write(randomCSV(new Random(17), 1000));
+    FactoryFailureException e =
+        assertThrows(FactoryFailureException.class, () -> parallel(file, true, creator));
+    assertEquals("613", e.getRow().get(0));
+  }
+}
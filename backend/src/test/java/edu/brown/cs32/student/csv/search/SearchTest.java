@@ -0,0 +1,167 @@
+package edu.brown.cs32.student.csv.search;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import edu.brown.cs32.student.csv.creator.StringListCreator;
+import edu.brown.cs32.student.csv.exception.NoHeaderException;
+import edu.brown.cs32.student.csv.parser.CSVParser;
+import edu.brown.cs32.student.csv.table.CSVTable;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/** Check the boolean queries and their plans, with and without the inverted index */
+public class SearchTest {
+  private static final String CSV =
+      "StarID,ProperName,X,Y,Z\n"
+          + "0,Sol,0,0,0\n"
+          + "1,,282.43485,0.00449,5.36884\n"
+          + "2,,43.04329,0.00285,-15.24144\n"
+          + "3,,277.11358,0.02422,223.27753\n"
+          + "70667,Proxima Centauri,-0.47175,-0.36132,-1.15037\n"
+          + "71454,Rigel Kentaurus B,-0.50359,-0.42128,-1.1767\n"
+          + "71457,Rigel Kentaurus A,-0.50362,-0.42139,-1.17665\n"
+          + "87666,Barnard's Star,-0.01729,-1.81533,0.14824\n"
+          + "118721,,-2.28262,0.64697,0.29354\n"
+          + "3759,96 G. Psc,7.26388,1.55643,0.68697\n";
+
+  private List<CSVTable> tables(boolean header) throws Exception {
+    String csv = header ? CSV : CSV.substring(CSV.indexOf('\n') + 1);
+    CSVTable table =
+        new CSVParser<>(header, new StringReader(csv), new StringListCreator()).parseTable();
+    return List.of(table, table.withIndex());
+  }
+
+  private static List<Integer> rows(BitSet bits) {
+    List<Integer> rows = new ArrayList<>();
+    bits.stream().forEach(rows::add);
+    return rows;
+  }
+
+  @Test
+  void testQueries() throws Exception {
+    for (CSVTable table : tables(true)) {
+      Search search = new Search(table);
+      assertEquals(List.of(0), rows(search.searchRows("Sol")));
+      assertEquals(List.of(0), rows(search.searchRows("0;X;name")));
+      assertEquals(List.of(0), rows(search.searchRows("0;0;idx")));
+      assertEquals(List.of(1, 2, 3, 8), rows(search.searchRows(";1;idx")));
+      assertEquals(
+          List.of(5, 6), rows(search.searchRows("or(Rigel Kentaurus A,Rigel Kentaurus B)")));
+      assertEquals(List.of(0), rows(search.searchRows("and(0;0;idx,Sol;ProperName;name)")));
+      assertEquals(List.of(0, 4, 5, 6, 7, 9), rows(search.searchRows("not(;ProperName;name)")));
+      assertEquals(List.of(1, 2, 3, 8), rows(search.searchRows("and(not(Sol),not(not(;1;idx)))")));
+      assertEquals(List.of(), rows(search.searchRows("nothing;7;idx")));
+      assertEquals(List.of("0", "Sol", "0", "0", "0"), search.search("Sol").get(0));
+    }
+  }
+
+  @Test
+  void testErrors() throws Exception {
+    for (CSVTable table : tables(false)) {
+      Search search = new Search(table);
+      assertThrows(NoHeaderException.class, () -> search.searchRows("Sol;ProperName;name"));
+      assertThrows(IllegalArgumentException.class, () -> search.searchRows("a;b"));
+    }
+  }
+
+  /** a random query in plain prefix form, and the rows it matches by brute force */
+  private String randomQuery(Random random, CSVTable table, BitSet expected, int depth) {
+    int kind = depth > 3 ? 3 + random.nextInt(2) : random.nextInt(5);
+    if (kind < 3) {
+      BitSet left = new BitSet(), right = new BitSet();
+      String op = kind == 0 ? "not" : kind == 1 ? "and" : "or";
+      String query = op + "," + randomQuery(random, table, left, depth + 1);
+      if (kind == 0) {
+        left.flip(0, table.rowCount());
+      } else {
+        query += "," + randomQuery(random, table, right, depth + 1);
+        if (kind == 1) left.and(right);
+        else left.or(right);
+      }
+      expected.or(left);
+      return query;
+    }
+    int row = random.nextInt(table.rowCount()), column = random.nextInt(table.columnCount());
+    String target = random.nextInt(8) == 0 ? "absent" : table.column(column).get(row);
+    boolean constrained = kind == 3;
+    for (int r = 0; r < table.rowCount(); r++) {
+      for (int c = 0; c < table.columnCount(); c++) {
+        if ((!constrained || c == column) && table.column(c).get(r).equals(target)) expected.set(r);
+      }
+    }
+    return constrained ? target + ";" + table.header().get(column) + ";name" : target;
+  }
+
+  /** plans reorder and short-cut, but match what the query says */
+  @Test
+  void testRandomPlans() throws Exception {
+    Random random = new Random(32);
+    StringBuilder csv = new StringBuilder("a,b,c\n");
+    for (int i = 0; i < 2000; i++) {
+      csv.append(random.nextInt(3)).append(',').append("v").append(random.nextInt(40)).append(',');
+      csv.append(random.nextInt(500) / 4.0).append('\n');
+    }
+    CSVTable plain =
+        new CSVParser<>(true, new StringReader(csv.toString()), new StringListCreator())
+            .parseTable();
+    for (CSVTable table : List.of(plain, plain.withIndex())) {
+      PlanCache plans = new PlanCache(10);
+      for (int i = 0; i < 300; i++) {
+        BitSet expected = new BitSet();
+        String query = randomQuery(random, table, expected, 0);
+        assertEquals(expected, new Search(table, plans).searchRows(query), query);
+        assertEquals(expected, new Search(table, plans).searchRows(query), query);
+        if (table == plain && i % 10 == 0) {
+          List<List<String>> streamed = new ArrayList<>();
+          Search.searchStream(
+              new CSVParser<>(true, new StringReader(csv.toString()), new StringListCreator()),
+              query,
+              streamed::add);
+          List<List<String>> rows = new ArrayList<>();
+          expected.stream().forEach(r -> rows.add(table.row(r)));
+          assertEquals(rows, streamed, query);
+        }
+      }
+    }
+  }
+
+  /** a streaming search reads no further than the consumer wants */
+  @Test
+  void testSearchStream() throws Exception {
+    for (boolean header : new boolean[] {true, false}) {
+      String csv = header ? CSV : CSV.substring(CSV.indexOf('\n') + 1);
+      CSVParser<List<String>> parser =
+          new CSVParser<>(header, new StringReader(csv), new StringListCreator());
+      List<List<String>> rows = new ArrayList<>();
+      Search.searchStream(parser, "not(;1;idx)", row -> rows.add(row) && rows.size() < 2);
+      assertEquals(List.of(List.of("0", "Sol", "0", "0", "0")), rows.subList(0, 1));
+      assertEquals("70667", rows.get(1).get(0));
+      // the parser is left right after the last row taken
+      assertEquals("71454", parser.iterator().next().get(0));
+    }
+    assertThrows(
+        NoHeaderException.class,
+        () ->
+            Search.searchStream(
+                new CSVParser<>(false, new StringReader(CSV), new StringListCreator()),
+                "Sol;ProperName;name",
+                row -> true));
+  }
+
+  /** a plan is reused for the same table only */
+  @Test
+  void testPlanCache() throws Exception {
+    PlanCache plans = new PlanCache(10);
+    CSVTable table = tables(true).get(0);
+    QueryPlan plan = plans.plan("Sol;ProperName;name", table);
+    assertSame(plan, plans.plan("Sol;ProperName;name", table));
+    assertNotSame(plan, plans.plan("Sol;ProperName;name", tables(true).get(0)));
+  }
+}
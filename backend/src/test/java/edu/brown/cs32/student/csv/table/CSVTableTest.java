@@ -0,0 +1,82 @@
+package edu.brown.cs32.student.csv.table;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.brown.cs32.student.csv.creator.StringListCreator;
+import edu.brown.cs32.student.csv.parser.CSVParser;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/** Check that the column store gives back every cell as it was and matches like String.equals */
+public class CSVTableTest {
+  private static final String CSV =
+      "id,name,x,code,mixed\n"
+          + "0,Sol,0.0,007,5\n"
+          + "1,Andreas,282.43485,7,5.5\n"
+          + "-12,Rigel,-0.0,7,x\n"
+          + "9223372036854775807,Sol,1.0E-5,7,5\n";
+
+  private CSVTable table() throws Exception {
+    return new CSVParser<>(true, new StringReader(CSV), new StringListCreator()).parseTable();
+  }
+
+  @Test
+  void testRoundTrip() throws Exception {
+    CSVTable table = table();
+    List<List<String>> rows = new ArrayList<>();
+    new CSVParser<>(true, new StringReader(CSV), new StringListCreator())
+        .parse(rows, new ArrayList<>());
+    assertEquals(List.of("id", "name", "x", "code", "mixed"), table.header());
+    assertEquals(rows, table.rows());
+
+    assertTrue(table.column(0) instanceof Column.LongColumn);
+    assertTrue(table.column(1) instanceof Column.StringColumn);
+    assertTrue(table.column(2) instanceof Column.DoubleColumn);
+    // "007" would not be written back as it was
+    assertTrue(table.column(3) instanceof Column.StringColumn);
+    assertTrue(table.column(4) instanceof Column.StringColumn);
+  }
+
+  @Test
+  void testMatches() throws Exception {
+    CSVTable table = table();
+    for (int c = 0; c < table.columnCount(); c++) {
+      for (String value :
+          List.of("0", "00", "-12", "Sol", "0.0", "-0.0", "1.0E-5", "0.00001", "7", "5", "5.0")) {
+        List<Integer> expected = new ArrayList<>();
+        for (int r = 0; r < table.rowCount(); r++) {
+          if (table.rows().get(r).get(c).equals(value)) expected.add(r);
+        }
+        List<Integer> actual = new ArrayList<>();
+        table.column(c).matches(value, actual::add);
+        assertEquals(expected, actual, "column " + c + " value " + value);
+      }
+    }
+  }
+
+  /** the index gives the same rows as the scans */
+  @Test
+  void testIndex() throws Exception {
+    CSVTable table = table().withIndex();
+    for (String value : List.of("0", "7", "Sol", "-0.0", "5", "x", "absent")) {
+      List<Integer> any = new ArrayList<>();
+      for (int c = 0; c < table.columnCount(); c++) {
+        List<Integer> expected = new ArrayList<>();
+        table.column(c).matches(value, expected::add);
+        assertEquals(expected, toList(table.index().rows(c, value)));
+        for (int row : expected) if (!any.contains(row)) any.add(row);
+      }
+      any.sort(null);
+      assertEquals(any, toList(table.index().rows(value)));
+    }
+  }
+
+  private static List<Integer> toList(int[] rows) {
+    List<Integer> list = new ArrayList<>();
+    for (int row : rows) list.add(row);
+    return list;
+  }
+}
@@ -0,0 +1,85 @@
+package edu.brown.cs32.student.csv.table;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+
+/** Check publishing, the byte budget and that readers only ever see whole tables */
+public class DatasetRegistryTest {
+  /** a table of one long column, 8 bytes per row */
+  private static CSVTable table(int rows) {
+    CSVTable.Builder builder = new CSVTable.Builder(List.of("n"));
+    for (int i = 0; i < rows; i++) builder.addRow(List.of(Integer.toString(rows)));
+    return builder.build();
+  }
+
+  @Test
+  void testBudget() {
+    DatasetRegistry registry = new DatasetRegistry(8 * 300);
+    CSVTable a = table(100), b = table(100), c = table(100);
+    assertEquals(List.of(), registry.publish("a", a));
+    assertEquals(List.of(), registry.publish("b", b));
+    assertEquals(List.of(), registry.publish("c", c));
+    assertEquals(8 * 300, registry.bytes());
+    // a was read last, so b is the least recently read
+    assertSame(a, registry.get("a"));
+    assertEquals(List.of("b"), registry.publish("d", table(100)));
+    assertEquals(Set.of("a", "c", "d"), registry.names());
+    assertNull(registry.get("b"));
+
+    // replacing a table frees what the old one took
+    assertEquals(List.of(), registry.publish("a", table(100)));
+    assertEquals(List.of("c", "d"), registry.publish("e", table(200)));
+    assertEquals(Set.of("a", "e"), registry.names());
+
+    IllegalArgumentException e =
+        assertThrows(IllegalArgumentException.class, () -> registry.publish("f", table(301)));
+    assertEquals("Dataset f takes 2408 bytes, over the budget of 2400", e.getMessage());
+    assertEquals(Set.of("a", "e"), registry.names());
+
+    assertTrue(registry.remove("a"));
+    assertFalse(registry.remove("a"));
+    assertEquals(Set.of("e"), registry.names());
+  }
+
+  /** a reader sees a table whose every cell holds its row count, whatever is loaded meanwhile */
+  @Test
+  void testConcurrentReaders() throws Exception {
+    DatasetRegistry registry = new DatasetRegistry(1L << 30);
+    registry.publish(DatasetRegistry.DEFAULT_NAME, table(1));
+    AtomicBoolean done = new AtomicBoolean();
+    AtomicReference<String> failure = new AtomicReference<>();
+    List<Thread> readers = new ArrayList<>();
+    for (int t = 0; t < 4; t++) {
+      Thread reader =
+          new Thread(
+              () -> {
+                while (!done.get()) {
+                  CSVTable table = registry.get(DatasetRegistry.DEFAULT_NAME);
+                  String expected = Integer.toString(table.rowCount());
+                  if (!table.column(0).get(table.rowCount() - 1).equals(expected)) {
+                    failure.set("table of " + expected + " rows");
+                  }
+                }
+              });
+      reader.start();
+      readers.add(reader);
+    }
+    for (int rows = 2; rows < 2000; rows++) {
+      registry.publish(DatasetRegistry.DEFAULT_NAME, table(rows));
+    }
+    done.set(true);
+    for (Thread reader : readers) reader.join();
+    assertNull(failure.get());
+  }
+}
@@ -0,0 +1,54 @@
+package edu.brown.cs32.student.server.bench;
+
+import edu.brown.cs32.student.server.utils.Data;
+import edu.brown.cs32.student.server.utils.GeoCoordinates;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/** Synthetic redlining-like data for the benchmarks */
+final class BenchData {
+  private BenchData() {}
+
+  /**
+   * Random small polygons spread over the continental US
+   *
+   * @param size number of features
+   * @param vertices vertices of every polygon ring
+   * @param seed random seed
+   * @return the GeoData
+   */
+  static Data.GeoData geoData(int size, int vertices, long seed) {
+    Random random = new Random(seed);
+    List<Data.GeoFeature> features = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      double lon = -125 + random.nextDouble() * 58;
+      double lat = 25 + random.nextDouble() * 24;
+      double[] ordinates = new double[2 * vertices];
+      for (int v = 0; v + 1 < vertices; v++) {
+        ordinates[2 * v] = lon + random.nextDouble() * 0.05;
+        ordinates[2 * v + 1] = lat + random.nextDouble() * 0.05;
+      }
+      // close the ring
+      ordinates[2 * vertices - 2] = ordinates[0];
+      ordinates[2 * vertices - 1] = ordinates[1];
+      GeoCoordinates coordinates =
+          new GeoCoordinates(ordinates, new int[] {0, vertices}, new int[] {0, 1});
+      features.add(
+          new Data.GeoFeature(
+              "Feature",
+              new Data.GeoGeometry("MultiPolygon", coordinates),
+              Map.of(
+                  "state",
+                  "RI",
+                  "city",
+                  "Providence",
+                  "holc_id",
+                  "A" + i,
+                  "holc_grade",
+                  String.valueOf("ABCD".charAt(random.nextInt(4))))));
+    }
+    return new Data.GeoData("FeatureCollection", features);
+  }
+}
@@ -0,0 +1,141 @@
+package edu.brown.cs32.student.server.bench;
+
+import edu.brown.cs32.student.csv.creator.Star;
+import edu.brown.cs32.student.csv.creator.StarCreator;
+import edu.brown.cs32.student.csv.creator.StringListCreator;
+import edu.brown.cs32.student.csv.parser.CSVParser;
+import edu.brown.cs32.student.csv.parser.CSVTokenizer;
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Parse throughput in MB/s, read from the "megabytes" counter: the old line splitting, the
+ * tokenizer alone, CSVParser making a String list of every row, and stars made from Strings or read
+ * in place. Add {@code -prof gc} to the JMH arguments to see the bytes allocated per row.
+ *
+ * <p>Run with {@code mvn test-compile dependency:build-classpath
+ * -Dmdep.outputFile=target/test-classpath.txt -Dmdep.includeScope=test}, then {@code java -cp
+ * target/test-classes:target/classes:$(cat target/test-classpath.txt) org.openjdk.jmh.Main
+ * CSVParseBenchmark}. JMH forks a JVM with the classpath it was started with, which exec:java does
+ * not pass on.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CSVParseBenchmark {
+  @Param({"100000"})
+  public int rows;
+
+  private String csv;
+  private double megabytes;
+
+  /** UTF-8 megabytes parsed, per second once JMH divides by the time */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  public static class Counters {
+    public double megabytes;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      megabytes = 0;
+    }
+  }
+
+  @Setup
+  public void setup() {
+    Random random = new Random(0);
+    String[] names = {"Sol", "Proxima Centauri", "Rigel Kentaurus A", "Barnard's Star", ""};
+    StringBuilder text = new StringBuilder("StarID,ProperName,X,Y,Z\n");
+    for (int i = 0; i < rows; i++) {
+      text.append(i)
+          .append(',')
+          .append(names[random.nextInt(names.length)])
+          .append(',')
+          // catalog coordinates have 5 decimals
+          .append(random.nextInt(100_000_000) / 1e5)
+          .append(',')
+          .append(random.nextInt(100_000_000) / -1e5)
+          .append(',')
+          .append(random.nextInt(100_000) / 1e5)
+          .append('\n');
+    }
+    csv = text.toString();
+    megabytes = csv.getBytes(StandardCharsets.UTF_8).length / 1e6;
+  }
+
+  @Benchmark
+  public int split(Counters counters) throws Exception {
+    BufferedReader reader = new BufferedReader(new StringReader(csv));
+    int cells = 0;
+    String line;
+    while ((line = reader.readLine()) != null) cells += List.of(line.split(",")).size();
+    counters.megabytes += megabytes;
+    return cells;
+  }
+
+  @Benchmark
+  public int tokenize(Counters counters) throws Exception {
+    CSVTokenizer tokenizer = new CSVTokenizer(new StringReader(csv));
+    int chars = 0;
+    while (tokenizer.next()) {
+      for (int i = 0; i < tokenizer.size(); i++) chars += tokenizer.getCharSequence(i).length();
+    }
+    counters.megabytes += megabytes;
+    return chars;
+  }
+
+  @Benchmark
+  public int parse(Counters counters) throws Exception {
+    List<List<String>> parsed =
+        new CSVParser<>(true, new StringReader(csv), new StringListCreator())
+            .parse(new ArrayList<>(), new ArrayList<>());
+    counters.megabytes += megabytes;
+    return parsed.size();
+  }
+
+  @Benchmark
+  public int starsFromStrings(Counters counters) throws Exception {
+    StarCreator creator = new StarCreator();
+    List<Star> stars =
+        new CSVParser<Star>(true, new StringReader(csv), row -> creator.create(row))
+            .parse(new ArrayList<>(), new ArrayList<>());
+    counters.megabytes += megabytes;
+    return stars.size();
+  }
+
+  @Benchmark
+  public int stars(Counters counters) throws Exception {
+    List<Star> stars =
+        new CSVParser<>(true, new StringReader(csv), new StarCreator())
+            .parse(new ArrayList<>(), new ArrayList<>());
+    counters.megabytes += megabytes;
+    return stars.size();
+  }
+
+  public static void main(String[] args) throws Exception {
+    new Runner(new OptionsBuilder().include(CSVParseBenchmark.class.getSimpleName()).build()).run();
+  }
+}
@@ -0,0 +1,81 @@
+package edu.brown.cs32.student.server.bench;
+
+import edu.brown.cs32.student.server.filter.FilterRequestConverter;
+import edu.brown.cs32.student.server.filter.ParallelFilterRequestConverter;
+import edu.brown.cs32.student.server.utils.Data;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Throughput of a country-wide /filter scan on 1 to N worker threads, against the sequential {@link
+ * FilterRequestConverter}.
+ *
+ * <p>Run with {@code mvn test-compile dependency:build-classpath
+ * -Dmdep.outputFile=target/test-classpath.txt -Dmdep.includeScope=test}, then {@code java -cp
+ * target/test-classes:target/classes:$(cat target/test-classpath.txt) org.openjdk.jmh.Main
+ * FilterScalingBenchmark}. JMH forks a JVM with the classpath it was started with, which exec:java
+ * does not pass on.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FilterScalingBenchmark {
+  // the contiguous US, where every feature lies
+  private static final Data.FilterRequest COUNTRY =
+      new Data.FilterRequest(24.0, 50.0, -126.0, -66.0);
+
+  @Param({"1", "2", "4", "8"})
+  public int parallelism;
+
+  @Param({"2048"})
+  public int threshold;
+
+  @Param({"200000"})
+  public int size;
+
+  private FilterRequestConverter sequential;
+  private ParallelFilterRequestConverter parallel;
+
+  @Setup
+  public void setup() {
+    Data.GeoData data = BenchData.geoData(size, 8, 32);
+    sequential = new FilterRequestConverter(data);
+    parallel = new ParallelFilterRequestConverter(data, parallelism, threshold);
+  }
+
+  @TearDown
+  public void tearDown() {
+    parallel.getPool().shutdown();
+  }
+
+  @Benchmark
+  public Object sequential() {
+    return sequential.convertFilterRequest(COUNTRY);
+  }
+
+  @Benchmark
+  public Object parallel() {
+    return parallel.convertFilterRequest(COUNTRY);
+  }
+
+  public static void main(String[] args) throws Exception {
+    new Runner(new OptionsBuilder().include(FilterScalingBenchmark.class.getSimpleName()).build())
+        .run();
+  }
+}
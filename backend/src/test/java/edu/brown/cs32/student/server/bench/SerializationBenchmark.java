@@ -0,0 +1,94 @@
+package edu.brown.cs32.student.server.bench;
+
+import com.squareup.moshi.Moshi;
+import com.squareup.moshi.Types;
+import edu.brown.cs32.student.server.utils.Codecs;
+import edu.brown.cs32.student.server.utils.Data;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Per-request Json cost with a fresh Moshi on every call (before) and the shared {@link Codecs}
+ * (after).
+ *
+ * <p>Run with {@code mvn test-compile dependency:build-classpath
+ * -Dmdep.outputFile=target/test-classpath.txt -Dmdep.includeScope=test}, then {@code java -cp
+ * target/test-classes:target/classes:$(cat target/test-classpath.txt) org.openjdk.jmh.Main
+ * SerializationBenchmark}. JMH forks a JVM with the classpath it was started with, which exec:java
+ * does not pass on.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+  private static final Type MAP_TYPE =
+      Types.newParameterizedType(Map.class, String.class, Object.class);
+  private static final String FILTER =
+      "{\"minLat\":\"40\",\"maxLat\":\"42\",\"minLon\":\"-72\",\"maxLon\":\"-70\"}";
+
+  private Map<String, Object> noteResponse;
+  private Map<String, Object> filterResponse;
+
+  @Setup
+  public void setup() {
+    noteResponse =
+        Map.of(
+            "result",
+            "success",
+            "data",
+            List.of(new Data.Note("Providence", "Brown University", 41.8393, -71.4162)));
+    filterResponse = Map.of("result", "success", "data", BenchData.geoData(50, 40, 32));
+  }
+
+  @Benchmark
+  public Object readFilterFreshMoshi() throws Exception {
+    return new Moshi.Builder().build().adapter(Data.FilterRequest.class).fromJson(FILTER);
+  }
+
+  @Benchmark
+  public Object readFilterShared() throws Exception {
+    return Codecs.FILTER_REQUEST.fromJson(FILTER);
+  }
+
+  @Benchmark
+  public String writeNoteFreshMoshi() {
+    return new Moshi.Builder().build().adapter(MAP_TYPE).toJson(noteResponse);
+  }
+
+  @Benchmark
+  public String writeNoteShared() {
+    return Codecs.MAP.toJson(noteResponse);
+  }
+
+  @Benchmark
+  public String writeFilterFreshMoshi() {
+    return new Moshi.Builder().build().adapter(MAP_TYPE).toJson(filterResponse);
+  }
+
+  @Benchmark
+  public String writeFilterShared() {
+    return Codecs.MAP.toJson(filterResponse);
+  }
+
+  public static void main(String[] args) throws Exception {
+    new Runner(new OptionsBuilder().include(SerializationBenchmark.class.getSimpleName()).build())
+        .run();
+  }
+}
@@ -0,0 +1,65 @@
+package edu.brown.cs32.student.server.filter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import edu.brown.cs32.student.server.utils.Data;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+/** Check hits, partial hits and misses of the filter cache */
+public class CachedFilterRequestConverterTest {
+
+  /** one 0.5 degree square per integer lon, lat in [-80, -70] x [35, 45] */
+  private Data.GeoData grid() {
+    List<Data.GeoFeature> features = new ArrayList<>();
+    for (int lon = -80; lon < -70; lon++) {
+      for (int lat = 35; lat < 45; lat++) {
+        List<List<Double>> ring =
+            List.of(
+                List.of(lon + 0.0, lat + 0.0),
+                List.of(lon + 0.5, lat + 0.0),
+                List.of(lon + 0.5, lat + 0.5),
+                List.of(lon + 0.0, lat + 0.0));
+        features.add(
+            new Data.GeoFeature(
+                "Feature",
+                new Data.GeoGeometry("MultiPolygon", List.of(List.of(ring))),
+                Map.of("holc_id", lon + "," + lat)));
+      }
+    }
+    return new Data.GeoData("FeatureCollection", features);
+  }
+
+  @Test
+  void testContainment() {
+    Data.GeoData data = grid();
+    GeoFilter linear = new FilterRequestConverter(data);
+    CachedFilterRequestConverter cached = new CachedFilterRequestConverter(linear, 10_000, 60);
+
+    Data.FilterRequest outer = new Data.FilterRequest(36.0, 43.0, -79.0, -72.0);
+    Data.FilterRequest inner = new Data.FilterRequest(38.0, 40.0, -77.0, -74.0);
+    Data.FilterRequest crossing = new Data.FilterRequest(42.0, 44.0, -77.0, -74.0);
+    Data.FilterRequest intersecting =
+        new Data.FilterRequest(38.0, 40.0, -77.0, -74.0, Data.FilterRequest.INTERSECTS);
+
+    for (Data.FilterRequest request : List.of(outer, inner, inner, crossing, intersecting)) {
+      assertEquals(
+          linear.convertFilterRequest(request).features(),
+          cached.convertFilterRequest(request).features());
+    }
+    // inner is answered from outer, then found; the others cover a different area or mode
+    assertEquals(new CachedFilterRequestConverter.Stats(1, 1, 3), cached.stats());
+  }
+
+  @Test
+  void testWeight() {
+    CachedFilterRequestConverter cached =
+        new CachedFilterRequestConverter(new FilterRequestConverter(grid()), 450, 60);
+    // 100 features fit in the cache, their 400 vertices do not
+    cached.convertFilterRequest(new Data.FilterRequest(null, null, null, null));
+    cached.getCache().cleanUp();
+    assertEquals(0, cached.getCache().size());
+  }
+}
@@ -0,0 +1,72 @@
+package edu.brown.cs32.student.server.filter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.brown.cs32.student.server.utils.Data;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/** Check that the parallel scan returns exactly what the sequential scan returns */
+public class ParallelFilterRequestConverterTest {
+  private final Random random = new Random(32);
+
+  private Data.GeoData randomData(int size) {
+    List<Data.GeoFeature> features = new ArrayList<>();
+    for (int i = 0; i < size; i++) {
+      double lon = -125 + random.nextDouble() * 60, lat = 25 + random.nextDouble() * 24;
+      List<List<Double>> ring =
+          List.of(
+              List.of(lon, lat),
+              List.of(lon + 0.3, lat),
+              List.of(lon + 0.3, lat + 0.3),
+              List.of(lon, lat));
+      features.add(
+          new Data.GeoFeature(
+              "Feature",
+              new Data.GeoGeometry("MultiPolygon", List.of(List.of(ring))),
+              Map.of("holc_id", "A" + i)));
+    }
+    return new Data.GeoData("FeatureCollection", features);
+  }
+
+  /** chunk sizes that do and do not divide the data, in both modes */
+  @Test
+  void testSameAsSequential() {
+    Data.GeoData data = randomData(1000);
+    GeoFilter sequential = new FilterRequestConverter(data);
+    for (int threshold : new int[] {1, 7, 100, 1000, 5000}) {
+      ParallelFilterRequestConverter parallel =
+          new ParallelFilterRequestConverter(data, 3, threshold);
+      for (int i = 0; i < 50; i++) {
+        double minLat = 25 + random.nextDouble() * 24, minLon = -125 + random.nextDouble() * 60;
+        String mode = i % 2 == 0 ? Data.FilterRequest.CONTAINED : Data.FilterRequest.INTERSECTS;
+        Data.FilterRequest request =
+            new Data.FilterRequest(minLat, minLat + 10, minLon, minLon + 20, mode);
+        assertEquals(
+            sequential.convertFilterRequest(request).features(),
+            parallel.convertFilterRequest(request).features());
+      }
+      parallel.getPool().shutdown();
+    }
+  }
+
+  /** a small box checks the few candidates of the tree on the calling thread */
+  @Test
+  void testSmallQueryStaysOnCaller() {
+    Data.GeoData data = randomData(10_000);
+    ParallelFilterRequestConverter parallel = new ParallelFilterRequestConverter(data, 3, 100);
+    Data.FilterRequest small = new Data.FilterRequest(30.0, 31.0, -100.0, -99.0);
+    assertEquals(
+        new FilterRequestConverter(data).convertFilterRequest(small).features(),
+        parallel.convertFilterRequest(small).features());
+    assertEquals(0, parallel.getPool().getPoolSize());
+    Data.FilterRequest country = new Data.FilterRequest(24.0, 50.0, -126.0, -64.0);
+    assertEquals(10_000, parallel.convertFilterRequest(country).features().size());
+    assertTrue(parallel.getPool().getPoolSize() > 0);
+    parallel.getPool().shutdown();
+  }
+}
@@ -0,0 +1,59 @@
+package edu.brown.cs32.student.server.filter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import edu.brown.cs32.student.server.utils.GeoCoordinates;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/** Check clipping of polygons to tile boxes */
+public class PolygonClipperTest {
+  private static List<List<Double>> square(double west, double south, double east, double north) {
+    return List.of(
+        List.of(west, south),
+        List.of(east, south),
+        List.of(east, north),
+        List.of(west, north),
+        List.of(west, south));
+  }
+
+  /** a polygon inside the box is returned as is */
+  @Test
+  void testInside() {
+    GeoCoordinates coordinates = GeoCoordinates.of(List.of(List.of(square(1, 1, 2, 2))));
+    assertSame(coordinates, PolygonClipper.clip(coordinates, 0, 0, 3, 3));
+  }
+
+  /** a polygon outside the box is dropped */
+  @Test
+  void testOutside() {
+    GeoCoordinates coordinates = GeoCoordinates.of(List.of(List.of(square(5, 5, 6, 6))));
+    assertNull(PolygonClipper.clip(coordinates, 0, 0, 3, 3));
+  }
+
+  /** a polygon across the box keeps the overlap, a hole outside the box is dropped */
+  @Test
+  void testOverlap() {
+    GeoCoordinates coordinates =
+        GeoCoordinates.of(
+            List.of(
+                List.of(square(-1, -1, 2, 2), square(-0.5, -0.5, -0.2, -0.2)),
+                List.of(square(10, 10, 11, 11))));
+    GeoCoordinates clipped = PolygonClipper.clip(coordinates, 0, 0, 3, 3);
+    assertEquals(1, clipped.polygonCount());
+    assertEquals(1, clipped.ringCount(0));
+    // closed ring of the four corners of the overlap
+    assertEquals(5, clipped.vertexCount(0, 0));
+    double minLon = 9, maxLon = -9, minLat = 9, maxLat = -9;
+    for (int v = 0; v < 5; v++) {
+      minLon = Math.min(minLon, clipped.lon(0, 0, v));
+      maxLon = Math.max(maxLon, clipped.lon(0, 0, v));
+      minLat = Math.min(minLat, clipped.lat(0, 0, v));
+      maxLat = Math.max(maxLat, clipped.lat(0, 0, v));
+    }
+    assertEquals(List.of(0.0, 2.0, 0.0, 2.0), List.of(minLon, maxLon, minLat, maxLat));
+    assertEquals(clipped.lon(0, 0, 0), clipped.lon(0, 0, 4));
+  }
+}
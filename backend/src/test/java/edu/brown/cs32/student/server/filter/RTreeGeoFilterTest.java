@@ -0,0 +1,79 @@
+package edu.brown.cs32.student.server.filter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import edu.brown.cs32.student.server.utils.Data;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/** Check that the R-tree index returns exactly what the linear scan returns */
+public class RTreeGeoFilterTest {
+  private final Random random = new Random(32);
+
+  /** build a random square-ish polygon feature around (lon, lat) */
+  private Data.GeoFeature randomFeature(double lon, double lat) {
+    List<List<Double>> ring = new ArrayList<>();
+    int vertices = 3 + random.nextInt(6);
+    for (int v = 0; v < vertices; v++) {
+      ring.add(List.of(lon + random.nextDouble() * 0.5, lat + random.nextDouble() * 0.5));
+    }
+    ring.add(ring.get(0));
+    return new Data.GeoFeature(
+        "Feature",
+        new Data.GeoGeometry("MultiPolygon", List.of(List.of(ring))),
+        Map.of("holc_grade", "A"));
+  }
+
+  private Data.GeoData randomData(int size) {
+    List<Data.GeoFeature> features = new ArrayList<>();
+    for (int i = 0; i < size; i++) {
+      features.add(randomFeature(-125 + random.nextDouble() * 60, 25 + random.nextDouble() * 24));
+    }
+    // features without coordinates are always returned, without geometry never
+    features.add(new Data.GeoFeature("Feature", new Data.GeoGeometry("MultiPolygon", null), null));
+    features.add(new Data.GeoFeature("Feature", null, null));
+    return new Data.GeoData("FeatureCollection", features);
+  }
+
+  /** random boxes of every size, in both modes */
+  @Test
+  void testSameAsLinearScan() {
+    Data.GeoData data = randomData(5000);
+    GeoFilter linear = new FilterRequestConverter(data);
+    GeoFilter index = new RTreeGeoFilter(data);
+    for (int i = 0; i < 500; i++) {
+      double minLat = -90 + random.nextDouble() * 180;
+      double maxLat = minLat + random.nextDouble() * (90 - minLat);
+      double minLon = -180 + random.nextDouble() * 360;
+      double maxLon = minLon + random.nextDouble() * (180 - minLon);
+      for (String mode : List.of(Data.FilterRequest.CONTAINED, Data.FilterRequest.INTERSECTS)) {
+        Data.FilterRequest request = new Data.FilterRequest(minLat, maxLat, minLon, maxLon, mode);
+        assertEquals(
+            linear.convertFilterRequest(request).features(),
+            index.convertFilterRequest(request).features());
+      }
+    }
+  }
+
+  /** the whole world returns every feature with geometry, in the original order */
+  @Test
+  void testWholeWorld() {
+    Data.GeoData data = randomData(1000);
+    Data.FilterRequest request = new Data.FilterRequest(null, null, null, null);
+    List<Data.GeoFeature> result =
+        new RTreeGeoFilter(data).convertFilterRequest(request).features();
+    assertEquals(1001, result.size());
+    assertEquals(new FilterRequestConverter(data).convertFilterRequest(request).features(), result);
+  }
+
+  /** an empty dataset */
+  @Test
+  void testEmpty() {
+    Data.GeoData data = new Data.GeoData("FeatureCollection", List.of());
+    Data.FilterRequest request = new Data.FilterRequest(40.0, 42.0, -72.0, -70.0);
+    assertEquals(0, new RTreeGeoFilter(data).convertFilterRequest(request).features().size());
+  }
+}
@@ -0,0 +1,63 @@
+package edu.brown.cs32.student.server.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.math.RoundingMode;
+import java.text.DecimalFormat;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/** Check the box normalization against the DecimalFormat round trip it replaced */
+public class FilterRequestTest {
+
+  /** the former normalization of one bound */
+  private static double viaDecimalFormat(double x, boolean max, double limit) {
+    if (max && x == limit) return x;
+    DecimalFormat df = new DecimalFormat();
+    df.setMaximumFractionDigits(3);
+    df.setRoundingMode(RoundingMode.FLOOR);
+    double floored = Double.parseDouble(df.format(x));
+    return max ? floored + 0.001 : floored;
+  }
+
+  private static void check(double lat, double lon) {
+    Data.FilterRequest request = new Data.FilterRequest(lat, lat, lon, lon);
+    assertEquals(viaDecimalFormat(lat, false, 90), request.minLat(), "minLat " + lat);
+    assertEquals(viaDecimalFormat(lat, true, 90), request.maxLat(), "maxLat " + lat);
+    assertEquals(viaDecimalFormat(lon, false, 180), request.minLon(), "minLon " + lon);
+    assertEquals(viaDecimalFormat(lon, true, 180), request.maxLon(), "maxLon " + lon);
+  }
+
+  /** every thousandth with its neighbours, and random values; assertEquals compares the bits */
+  @Test
+  void testSameAsDecimalFormat() {
+    for (int k = -90000; k <= 90000; k++) {
+      double lat = k / 1000.0, lon = 2 * k / 1000.0;
+      check(lat, lon);
+      check(Math.max(-90, Math.nextDown(lat)), Math.max(-180, Math.nextDown(lon)));
+      check(Math.min(90, Math.nextUp(lat)), Math.min(180, Math.nextUp(lon)));
+    }
+    Random random = new Random(32);
+    for (int i = 0; i < 100_000; i++) {
+      check(-90 + 180 * random.nextDouble(), -180 + 360 * random.nextDouble());
+    }
+  }
+
+  /** the sign of zero and DecimalFormat printing tiny negatives as "-0" */
+  @Test
+  void testNearZero() {
+    for (double x : new double[] {0.0, -0.0, -1e-4, Math.nextUp(-1e-4), -1e-300, 1e-300}) {
+      check(x, x);
+    }
+  }
+
+  /** boxes with the same normalized bounds share a key */
+  @Test
+  void testKey() {
+    Data.FilterRequest request = new Data.FilterRequest(41.80009, 41.9, -71.5, -71.39999);
+    assertEquals(
+        new Data.FilterRequest.Key(41800, 41901, -71500, -71399, "contained"), request.key());
+    assertEquals(request.key(), new Data.FilterRequest(41.8005, 41.9009, -71.4999, -71.3999).key());
+    assertEquals(90000, new Data.FilterRequest(null, null, null, null).key().maxLat());
+  }
+}
@@ -0,0 +1,72 @@
+package edu.brown.cs32.student.server.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import com.squareup.moshi.Moshi;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/** Check the packed coordinates against the nested GeoJSON shape */
+public class GeoCoordinatesTest {
+  private static final String GEOMETRY =
+      "{\"type\":\"MultiPolygon\",\"coordinates\":"
+          + "[[[[-71.1,41.8],[-71.2,41.9],[-71.3,41.8],[-71.1,41.8]],[[-71.15,41.85],[-71.2,41.86]]],"
+          + "[[[-72.0,40.0],[-72.5,40.5,12.0],[-72.0,40.0]]]]}";
+
+  /** parse, walk through the list view and the primitive accessors, write back */
+  @Test
+  void testRoundTrip() throws Exception {
+    Moshi moshi = new Moshi.Builder().build();
+    Data.GeoGeometry geometry = moshi.adapter(Data.GeoGeometry.class).fromJson(GEOMETRY);
+    GeoCoordinates coordinates = geometry.coordinates();
+
+    assertEquals(2, coordinates.polygonCount());
+    assertEquals(2, coordinates.ringCount(0));
+    assertEquals(1, coordinates.ringCount(1));
+    assertEquals(4, coordinates.vertexCount(0, 0));
+    assertEquals(-71.2, coordinates.lon(0, 1, 1));
+    assertEquals(41.86, coordinates.lat(0, 1, 1));
+    assertEquals(List.of(-72.5, 40.5), coordinates.get(1).get(0).get(1));
+
+    // altitude is not kept
+    assertEquals(
+        GEOMETRY.replace(",12.0", ""), moshi.adapter(Data.GeoGeometry.class).toJson(geometry));
+  }
+
+  /** envelopes are computed when the coordinates are read */
+  @Test
+  void testEnvelope() throws Exception {
+    Moshi moshi = new Moshi.Builder().build();
+    GeoCoordinates coordinates =
+        moshi.adapter(Data.GeoGeometry.class).fromJson(GEOMETRY).coordinates();
+    assertEquals(new Data.Envelope(-72.5, 40.0, -71.1, 41.9), coordinates.envelope());
+    assertEquals(new Data.Envelope(-71.3, 41.8, -71.1, 41.9), coordinates.firstRingEnvelope());
+    assertNull(GeoCoordinates.of(List.of(List.of())).firstRingEnvelope());
+  }
+
+  /** nested lists and the packed arrays compare equal */
+  @Test
+  void testEqualsNested() {
+    List<List<List<List<Double>>>> nested =
+        List.of(List.of(List.of(List.of(1.0, 2.0), List.of(3.0, 4.0))), List.of());
+    GeoCoordinates packed = GeoCoordinates.of(nested);
+    assertEquals(nested, packed);
+    assertEquals(packed, nested);
+    assertEquals(packed, GeoCoordinates.of(nested));
+    assertEquals(nested.hashCode(), packed.hashCode());
+    assertEquals(0, packed.ringCount(1));
+    List<List<List<List<Double>>>> other =
+        List.of(List.of(List.of(List.of(1.0, 2.0), List.of(3.0, -0.0))));
+    assertEquals(other.hashCode(), GeoCoordinates.of(other).hashCode());
+  }
+
+  /** null coordinates stay null */
+  @Test
+  void testNull() throws Exception {
+    Moshi moshi = new Moshi.Builder().build();
+    Data.GeoGeometry geometry =
+        moshi.adapter(Data.GeoGeometry.class).fromJson("{\"type\":\"MultiPolygon\"}");
+    assertNull(geometry.coordinates());
+  }
+}
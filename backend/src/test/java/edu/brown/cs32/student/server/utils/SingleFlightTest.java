@@ -0,0 +1,69 @@
+package edu.brown.cs32.student.server.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+/** Check that callers arriving during a call share it, value or exception */
+public class SingleFlightTest {
+  @Test
+  void testCoalesce() throws Exception {
+    SingleFlight<String, Integer> flights = new SingleFlight<>();
+    AtomicInteger calls = new AtomicInteger();
+    CompletableFuture<Void> release = new CompletableFuture<>();
+    List<CompletableFuture<Integer>> results = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      results.add(
+          flights.submit("providence", () -> release.thenApply(done -> calls.incrementAndGet())));
+    }
+    assertEquals(new SingleFlight.Stats(1, 7), flights.stats());
+    assertFalse(results.get(0).isDone());
+    // a caller cannot complete the call for the others
+    results.get(0).complete(-1);
+    release.complete(null);
+    for (CompletableFuture<Integer> result : results.subList(1, 8)) {
+      assertEquals(1, result.get());
+    }
+
+    // done calls are not kept
+    assertEquals(
+        2,
+        flights
+            .submit("providence", () -> CompletableFuture.completedFuture(calls.incrementAndGet()))
+            .get());
+    assertEquals(new SingleFlight.Stats(2, 7), flights.stats());
+
+    CompletableFuture<Integer> fail = new CompletableFuture<>();
+    List<CompletableFuture<Integer>> failures = new ArrayList<>();
+    for (int i = 0; i < 4; i++) failures.add(flights.submit("boston", () -> fail));
+    fail.completeExceptionally(new IOException("down"));
+    for (CompletableFuture<Integer> failure : failures) {
+      ExecutionException e = assertThrows(ExecutionException.class, failure::get);
+      assertEquals(IOException.class, e.getCause().getClass());
+      assertEquals("down", e.getCause().getMessage());
+    }
+    assertEquals(new SingleFlight.Stats(3, 10), flights.stats());
+
+    // a call failing to start fails its callers
+    ExecutionException e =
+        assertThrows(
+            ExecutionException.class,
+            () ->
+                flights
+                    .submit(
+                        "boston",
+                        () -> {
+                          throw new IllegalStateException("no");
+                        })
+                    .get());
+    assertEquals("no", e.getCause().getMessage());
+  }
+}
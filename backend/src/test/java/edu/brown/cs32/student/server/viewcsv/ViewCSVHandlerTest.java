@@ -0,0 +1,79 @@
+package edu.brown.cs32.student.server.viewcsv;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import edu.brown.cs32.student.csv.table.CSVTable;
+import edu.brown.cs32.student.server.utils.Codecs;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import okio.Buffer;
+import org.junit.jupiter.api.Test;
+
+/** Check that pages written by the view cover the table once, in order */
+public class ViewCSVHandlerTest {
+  private static CSVTable table(int rows) {
+    CSVTable.Builder builder = new CSVTable.Builder(List.of("id", "name", "x"));
+    for (int i = 0; i < rows; i++) {
+      builder.addRow(List.of(Integer.toString(i), "star \"" + i % 3 + "\"", i + ".5"));
+    }
+    return builder.build();
+  }
+
+  private static Map<String, Object> write(CSVTable table, ViewCursor page) throws Exception {
+    Buffer buffer = new Buffer();
+    ViewCSVHandler.writePage(buffer, table, page);
+    return Codecs.MAP.fromJson(buffer);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void testPages() throws Exception {
+    CSVTable table = table(25);
+    Map<String, Object> all =
+        write(table, new ViewCursor("t", table.version(), 0, Integer.MAX_VALUE));
+    List<List<String>> expected = new ArrayList<>();
+    expected.add(table.header());
+    expected.addAll(table.rows());
+    assertEquals(expected, all.get("detail"));
+    assertEquals("success", all.get("result"));
+    assertEquals(true, all.get("header"));
+    assertEquals(25.0, all.get("total"));
+    assertFalse(all.containsKey("next"));
+
+    List<List<String>> paged = new ArrayList<>();
+    ViewCursor page = new ViewCursor("t", table.version(), 0, 10);
+    int pages = 0;
+    while (true) {
+      Map<String, Object> response = write(table, page);
+      List<List<String>> detail = (List<List<String>>) response.get("detail");
+      // every page starts with the header
+      assertEquals(table.header(), detail.get(0));
+      paged.addAll(detail.subList(1, detail.size()));
+      pages++;
+      if (!response.containsKey("next")) break;
+      page = ViewCursor.decode((String) response.get("next"));
+    }
+    assertEquals(3, pages);
+    assertEquals(table.rows(), paged);
+
+    Map<String, Object> past = write(table, new ViewCursor("t", table.version(), 40, 10));
+    assertEquals(List.of(table.header()), past.get("detail"));
+    assertEquals(25.0, past.get("offset"));
+  }
+
+  @Test
+  void testCursor() {
+    ViewCursor cursor = new ViewCursor("a:b c", 7, 100, 50);
+    assertEquals(cursor, ViewCursor.decode(cursor.encode()));
+    assertThrows(IllegalArgumentException.class, () -> ViewCursor.decode("not a cursor"));
+    assertThrows(IllegalArgumentException.class, () -> ViewCursor.decode("MTox"));
+    IllegalArgumentException e =
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> ViewCursor.decode(new ViewCursor("a", 1, -1, 5).encode()));
+    assertEquals("get cursor=MTotMTo1OmE, should be a next from /viewcsv", e.getMessage());
+  }
+}
@@ -0,0 +1,178 @@
+package edu.brown.cs32.student.server.weather;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import edu.brown.cs32.student.server.utils.SingleFlight;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.Test;
+
+/** Check that the grid finds the requests a scan over every cached request finds */
+public class CachedNWSRequestConverterTest {
+  private static final OffsetDateTime NOON =
+      OffsetDateTime.of(2023, 3, 1, 12, 0, 0, 0, ZoneOffset.UTC);
+
+  /** a gridpoint per 0.1 degree, each forecast 156 hours from noon, counting the calls */
+  private static final class CountingConverter extends NWSRequestConverter {
+    int points, forecasts;
+
+    @Override
+    public CompletableFuture<String> forecastUrlAsync(String point) {
+      points++;
+      String[] latLon = point.split(",");
+      return CompletableFuture.completedFuture(
+          "https://api.weather.gov/gridpoints/"
+              + Math.round(Double.parseDouble(latLon[0]) * 10)
+              + ","
+              + Math.round(Double.parseDouble(latLon[1]) * 10)
+              + "/forecast/hourly");
+    }
+
+    @Override
+    public CompletableFuture<Data.ForecastAPIData> forecastAsync(String url) {
+      return CompletableFuture.completedFuture(forecast());
+    }
+
+    Data.ForecastAPIData forecast() {
+      forecasts++;
+      List<Data.ForecastAPIPeriod> periods = new ArrayList<>();
+      for (int h = 0; h < 156; h++) {
+        periods.add(
+            new Data.ForecastAPIPeriod(
+                NOON.plusHours(h).toString(), NOON.plusHours(h + 1).toString(), forecasts, "F"));
+      }
+      return new Data.ForecastAPIData(new Data.ForecastAPIProperties(periods));
+    }
+  }
+
+  @Test
+  void testNearby() throws Exception {
+    CountingConverter nws = new CountingConverter();
+    CachedNWSRequestConverter cached = new CachedNWSRequestConverter(nws, 100, 60);
+    Data.ForecastAPIPeriod providence =
+        cached.convertNWSRequest(new Data.WeatherRequest(41.824, -71.4128, NOON));
+    // about a mile away, 50 minutes later
+    assertSame(
+        providence,
+        cached.convertNWSRequest(new Data.WeatherRequest(41.838, -71.42, NOON.plusMinutes(50))));
+    // the same instant written with another offset
+    assertSame(
+        providence,
+        cached.convertNWSRequest(
+            new Data.WeatherRequest(
+                41.824, -71.4128, NOON.withOffsetSameInstant(ZoneOffset.ofHours(-5)))));
+    assertEquals(1, cached.getCache().size());
+    // Boston is further than 3 miles
+    cached.convertNWSRequest(new Data.WeatherRequest(42.3601, -71.0589, NOON));
+    assertEquals(2, nws.points);
+    assertEquals(2, nws.forecasts);
+
+    // other hours at the same place come from the forecast already fetched
+    for (int h = 2; h < 156; h += 2) {
+      Data.ForecastAPIPeriod period =
+          cached.convertNWSRequest(
+              new Data.WeatherRequest(41.824, -71.4128, NOON.plusHours(h).plusMinutes(30)));
+      assertEquals(NOON.plusHours(h).toString(), period.startTime());
+    }
+    assertEquals(2, nws.points);
+    assertEquals(2, nws.forecasts);
+    TimeNotFoundInNWSDataException e =
+        assertThrows(
+            TimeNotFoundInNWSDataException.class,
+            () ->
+                HourlyForecast.of(new CountingConverter().forecast()).period(NOON.plusHours(156)));
+    assertEquals(
+        "Unable to provide data for requested time: " + NOON.plusHours(156), e.getMessage());
+
+    // a dropped request is no longer matched, but its place and forecast are kept
+    cached.getCache().invalidateAll();
+    cached.convertNWSRequest(new Data.WeatherRequest(41.838, -71.42, NOON));
+    assertEquals(1, cached.getCache().size());
+    assertEquals(3, nws.points);
+    assertEquals(2, nws.forecasts);
+  }
+
+  /** misses at once around one gridpoint make one forecast call */
+  @Test
+  void testCoalesce() throws Exception {
+    CompletableFuture<Void> release = new CompletableFuture<>();
+    CountingConverter counting = new CountingConverter();
+    NWSRequestConverter nws =
+        new NWSRequestConverter() {
+          @Override
+          public CompletableFuture<String> forecastUrlAsync(String point) {
+            return counting.forecastUrlAsync(point);
+          }
+
+          @Override
+          public CompletableFuture<Data.ForecastAPIData> forecastAsync(String url) {
+            return release.thenApply(done -> counting.forecast());
+          }
+        };
+    CachedNWSRequestConverter cached = new CachedNWSRequestConverter(nws, 100, 60);
+    List<CompletableFuture<Data.ForecastAPIPeriod>> results = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      // all miss at once, at other places of one gridpoint, and none waits for the API
+      results.add(
+          cached.convertNWSRequestAsync(new Data.WeatherRequest(41.8 + i * 0.002, -71.4, NOON)));
+    }
+    assertFalse(results.get(7).isDone());
+    release.complete(null);
+    for (CompletableFuture<Data.ForecastAPIPeriod> result : results) {
+      assertSame(results.get(0).get(), result.get());
+    }
+    assertEquals(new SingleFlight.Stats(8, 0), cached.stats().points().calls());
+    assertEquals(new SingleFlight.Stats(1, 7), cached.stats().forecasts().calls());
+    assertEquals(1, counting.forecasts);
+    assertEquals(8, cached.getCache().size());
+  }
+
+  @Test
+  void testSameAsScan() {
+    Random random = new Random(21);
+    ProximityIndex index = new ProximityIndex(3, 3600);
+    List<Data.WeatherRequest> cached = new ArrayList<>();
+    for (int i = 0; i < 5_000; i++) {
+      Data.WeatherRequest request = request(random);
+      cached.add(request);
+      index.add(request);
+    }
+    assertEquals(5_000, index.size());
+    for (int i = 0; i < 1_000; i++) {
+      Data.WeatherRequest request = request(random);
+      Data.WeatherRequest nearest = null;
+      double nearestDist = Double.MAX_VALUE;
+      for (Data.WeatherRequest candidate : cached) {
+        long seconds =
+            Math.abs(candidate.datetime().toEpochSecond() - request.datetime().toEpochSecond());
+        double dist =
+            ProximityIndex.distance(request.lat(), request.lon(), candidate.lat(), candidate.lon());
+        if (seconds <= 3600 && dist <= 3 && dist < nearestDist) {
+          nearest = candidate;
+          nearestDist = dist;
+        }
+      }
+      assertEquals(nearest, index.nearest(request));
+    }
+    for (Data.WeatherRequest request : cached) index.remove(request);
+    assertEquals(0, index.size());
+    assertNull(index.nearest(cached.get(0)));
+  }
+
+  /** somewhere in a small patch at a middle or a high latitude, within a day */
+  private static Data.WeatherRequest request(Random random) {
+    double lat = random.nextBoolean() ? 41.5 : 64.5;
+    return new Data.WeatherRequest(
+        lat + random.nextDouble() * 0.5,
+        -150 + random.nextDouble() * 0.5,
+        NOON.plusSeconds(random.nextInt(86_400)));
+  }
+}
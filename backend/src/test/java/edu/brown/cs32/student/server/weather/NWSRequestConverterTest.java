@@ -0,0 +1,227 @@
+package edu.brown.cs32.student.server.weather;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/** Check the client against a slow local stand-in for the NWS API */
+public class NWSRequestConverterTest {
+  private static final OffsetDateTime NOON =
+      OffsetDateTime.of(2023, 3, 1, 12, 0, 0, 0, ZoneOffset.UTC);
+  private static final long DELAY = 200;
+
+  private HttpServer server;
+  private ThreadPoolExecutor serverThreads;
+  private String base;
+  // the client ends of the connections seen
+  private final Set<SocketAddress> connections = ConcurrentHashMap.newKeySet();
+
+  @BeforeEach
+  void setUp() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    base = "http://localhost:" + server.getAddress().getPort();
+    server.createContext(
+        "/points/",
+        exchange -> {
+          String point = exchange.getRequestURI().getPath().substring("/points/".length());
+          if (point.startsWith("0.0000")) {
+            respond(exchange, 404, "{}");
+          } else if (point.startsWith("1.0000")) {
+            respond(exchange, 200, "{\"properties\":{}}");
+          } else {
+            respond(
+                exchange,
+                200,
+                "{\"properties\":{\"forecastHourly\":\""
+                    + base
+                    + "/gridpoints/"
+                    + point
+                    + "/forecast/hourly\"}}");
+          }
+        });
+    server.createContext(
+        "/gridpoints/",
+        exchange -> {
+          StringBuilder periods = new StringBuilder();
+          for (int h = 0; h < 156; h++) {
+            if (h > 0) periods.append(',');
+            periods
+                .append("{\"startTime\":\"")
+                .append(NOON.plusHours(h))
+                .append("\",\"endTime\":\"")
+                .append(NOON.plusHours(h + 1))
+                .append("\",\"temperature\":")
+                .append(h)
+                .append(",\"temperatureUnit\":\"F\"}");
+          }
+          respond(exchange, 200, "{\"properties\":{\"periods\":[" + periods + "]}}");
+        });
+    server.createContext(
+        "/stall/",
+        exchange -> {
+          // the headers at once, then half the body, then nothing
+          exchange.sendResponseHeaders(200, 64);
+          OutputStream out = exchange.getResponseBody();
+          out.write("{\"properties\":".getBytes(StandardCharsets.UTF_8));
+          out.flush();
+          try {
+            Thread.sleep(10 * DELAY * 5);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          exchange.close();
+        });
+    serverThreads = (ThreadPoolExecutor) Executors.newFixedThreadPool(64);
+    // started now, so that they are not counted as the client's
+    serverThreads.prestartAllCoreThreads();
+    server.setExecutor(serverThreads);
+    server.start();
+  }
+
+  @AfterEach
+  void tearDown() {
+    server.stop(0);
+    serverThreads.shutdownNow();
+  }
+
+  private void respond(HttpExchange exchange, int status, String body) throws IOException {
+    connections.add(exchange.getRemoteAddress());
+    try {
+      Thread.sleep(DELAY);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+    exchange.sendResponseHeaders(status, bytes.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(bytes);
+    }
+  }
+
+  private NWSRequestConverter client() {
+    return new NWSRequestConverter(base, Duration.ofSeconds(2), Duration.ofSeconds(5), 2);
+  }
+
+  @Test
+  void testAnswers() throws Exception {
+    NWSRequestConverter nws = client();
+    Data.ForecastAPIPeriod period =
+        nws.convertNWSRequest(new Data.WeatherRequest(41.824, -71.4128, NOON.plusMinutes(150)));
+    assertEquals(
+        new Data.ForecastAPIPeriod(
+            NOON.plusHours(2).toString(), NOON.plusHours(3).toString(), 2, "F"),
+        period);
+
+    IOException missing =
+        assertThrows(
+            IOException.class, () -> nws.convertNWSRequest(new Data.WeatherRequest(0, 0, NOON)));
+    assertEquals(
+        "Unable to provide data for requested URL: " + base + "/points/0.0000,0.0000",
+        missing.getMessage());
+    ForecastNotFoundInNWSDataException noForecast =
+        assertThrows(
+            ForecastNotFoundInNWSDataException.class,
+            () -> nws.convertNWSRequest(new Data.WeatherRequest(1, 0, NOON)));
+    assertEquals(
+        "Unable to provide data for requested URL: " + base + "/points/1.0000,0.0000",
+        noForecast.getMessage());
+    assertThrows(
+        TimeNotFoundInNWSDataException.class,
+        () -> nws.convertNWSRequest(new Data.WeatherRequest(41.824, -71.4128, NOON.minusHours(1))));
+    // every call above went over one kept-alive connection
+    assertEquals(1, connections.size());
+
+    NWSRequestConverter slow =
+        new NWSRequestConverter(base, Duration.ofSeconds(2), Duration.ofMillis(DELAY / 4), 2);
+    CompletionException timeout =
+        assertThrows(
+            CompletionException.class, () -> slow.forecastAsync(base + "/gridpoints/x").join());
+    assertEquals(
+        "Unable to provide data for requested URL: " + base + "/gridpoints/x",
+        timeout.getCause().getMessage());
+    assertTrue(timeout.getCause().getCause() instanceof HttpTimeoutException);
+  }
+
+  /** an answer stalled after its headers times out, and gives its decoding thread back */
+  @Test
+  void testStalledBody() throws Exception {
+    NWSRequestConverter nws =
+        new NWSRequestConverter(base, Duration.ofSeconds(2), Duration.ofMillis(3 * DELAY), 2);
+    long start = System.nanoTime();
+    List<CompletableFuture<Data.ForecastAPIData>> stalled = new ArrayList<>();
+    for (int i = 0; i < 4; i++) stalled.add(nws.forecastAsync(base + "/stall/" + i));
+    for (int i = 0; i < 4; i++) {
+      CompletionException e = assertThrows(CompletionException.class, stalled.get(i)::join);
+      assertEquals(
+          "Unable to provide data for requested URL: " + base + "/stall/" + i,
+          e.getCause().getMessage());
+      assertTrue(e.getCause().getCause() instanceof HttpTimeoutException);
+    }
+    // the server stalls for 10 s, more stalled answers than decoding threads gave them back
+    CompletableFuture<Data.ForecastAPIData> whole = nws.forecastAsync(base + "/gridpoints/x");
+    assertEquals(156, whole.join().properties().periods().size());
+    long took = (System.nanoTime() - start) / 1_000_000;
+    assertTrue(took < 2 * 3 * DELAY + DELAY, "took " + took + " ms");
+  }
+
+  /** calls wait for the API on the client's threads, not on one thread per call */
+  @Test
+  void testConcurrentCalls() throws Exception {
+    NWSRequestConverter nws = client();
+    // warm up the client's threads
+    nws.convertNWSRequest(new Data.WeatherRequest(41.824, -71.4128, NOON));
+    ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    int before = threads.getThreadCount();
+
+    int calls = 32;
+    long start = System.nanoTime();
+    List<CompletableFuture<Data.ForecastAPIPeriod>> periods = new ArrayList<>();
+    for (int i = 0; i < calls; i++) {
+      periods.add(nws.convertNWSRequestAsync(new Data.WeatherRequest(40 + i, -71, NOON)));
+    }
+    // sending returns at once
+    long issued = (System.nanoTime() - start) / 1_000_000;
+    assertTrue(issued < DELAY, "issued in " + issued + " ms");
+    assertFalse(periods.get(calls - 1).isDone());
+    int most = 0;
+    for (CompletableFuture<Data.ForecastAPIPeriod> period : periods) {
+      while (!period.isDone()) {
+        most = Math.max(most, threads.getThreadCount());
+        Thread.sleep(5);
+      }
+      assertEquals(0, period.get().temperature());
+    }
+    long took = (System.nanoTime() - start) / 1_000_000;
+    // two calls in a row for every request, one request after another would take
+    // calls * 2 * DELAY
+    assertTrue(took < calls * 2 * DELAY / 4, "took " + took + " ms");
+    // the client's own threads and the HTTP selector, not a thread per call
+    assertTrue(most - before < calls / 2, (most - before) + " more threads");
+  }
+}
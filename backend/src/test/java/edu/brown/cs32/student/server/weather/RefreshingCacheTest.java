@@ -0,0 +1,154 @@
+package edu.brown.cs32.student.server.weather;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.common.base.Ticker;
+import edu.brown.cs32.student.server.utils.SingleFlight;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+/** Check that old answers are served at once, refreshed behind, and kept while the API fails */
+public class RefreshingCacheTest {
+  /** a clock moved by hand */
+  private static final class FakeTicker extends Ticker {
+    final AtomicLong nanos = new AtomicLong();
+
+    @Override
+    public long read() {
+      return nanos.get();
+    }
+
+    void advance(long seconds) {
+      nanos.addAndGet(TimeUnit.SECONDS.toNanos(seconds));
+    }
+  }
+
+  /** answers with the number of calls, or fails while down */
+  private static final class Api {
+    final AtomicInteger calls = new AtomicInteger();
+    volatile boolean down;
+
+    CompletableFuture<Integer> fetch() {
+      int call = calls.incrementAndGet();
+      return down
+          ? CompletableFuture.failedFuture(new IOException("down"))
+          : CompletableFuture.completedFuture(call);
+    }
+  }
+
+  private static RefreshingCache<Integer> cache(Executor refresher, Ticker ticker) {
+    return new RefreshingCache<>(100, 60, 600, 300, Duration.ofMillis(100), refresher, ticker);
+  }
+
+  @Test
+  void testStaleWhileRevalidate() throws Exception {
+    FakeTicker ticker = new FakeTicker();
+    List<Runnable> queued = new ArrayList<>();
+    RefreshingCache<Integer> cache = cache(queued::add, ticker);
+    Api api = new Api();
+
+    assertEquals(1, cache.get("pvd", api::fetch).get());
+    ticker.advance(59);
+    assertEquals(1, cache.get("pvd", api::fetch).get());
+    assertTrue(queued.isEmpty());
+
+    // past the soft TTL the old answer is served, and one refresh is queued
+    ticker.advance(1);
+    assertEquals(1, cache.get("pvd", api::fetch).get());
+    assertEquals(1, cache.get("pvd", api::fetch).get());
+    assertEquals(1, queued.size());
+    assertEquals(1, api.calls.get());
+    queued.remove(0).run();
+    assertEquals(2, cache.get("pvd", api::fetch).get());
+
+    // while the API is down the last answer is served until the hard TTL, 600s after it was
+    // fetched, and it is refreshed once per retry time, not on every request
+    api.down = true;
+    for (int minute = 1; minute < 10; minute++) {
+      ticker.advance(60);
+      assertEquals(2, cache.get("pvd", api::fetch).get());
+      assertEquals(2, cache.get("pvd", api::fetch).get());
+      // failed at minute 1, tried again at minute 6
+      assertEquals(minute == 1 || minute == 6 ? 1 : 0, queued.size(), "minute " + minute);
+      if (!queued.isEmpty()) queued.remove(0).run();
+    }
+    assertEquals(4, api.calls.get());
+    assertEquals(new SingleFlight.Stats(4, 0), cache.stats().calls());
+    assertEquals(20, cache.stats().staleHits());
+    assertEquals(2, cache.stats().refreshFailures());
+    ticker.advance(60);
+    ExecutionException e =
+        assertThrows(ExecutionException.class, () -> cache.get("pvd", api::fetch).get());
+    assertEquals("down", e.getCause().getMessage());
+
+    // up again, a missing answer is waited for
+    api.down = false;
+    assertEquals(6, cache.get("pvd", api::fetch).get());
+    assertTrue(queued.isEmpty());
+  }
+
+  /** a call the API never answers times out, frees its key and is tried again later */
+  @Test
+  void testRefreshTimeout() throws Exception {
+    FakeTicker ticker = new FakeTicker();
+    List<Runnable> queued = new ArrayList<>();
+    RefreshingCache<Integer> cache = cache(queued::add, ticker);
+    Api api = new Api();
+    assertEquals(1, cache.get("pvd", api::fetch).get());
+    ticker.advance(60);
+    CompletableFuture<Integer> hung = new CompletableFuture<>();
+    assertEquals(1, cache.get("pvd", () -> hung).get());
+    long start = System.nanoTime();
+    queued.remove(0).run();
+    assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+    assertEquals(1, cache.stats().refreshFailures());
+
+    ticker.advance(299);
+    assertEquals(1, cache.get("pvd", api::fetch).get());
+    assertTrue(queued.isEmpty());
+    ticker.advance(1);
+    assertEquals(1, cache.get("pvd", api::fetch).get());
+    assertEquals(1, queued.size());
+    queued.remove(0).run();
+    assertEquals(2, cache.get("pvd", api::fetch).get());
+  }
+
+  /** a refresh the executor turns away leaves the old answer and is tried again later */
+  @Test
+  void testRejected() throws Exception {
+    FakeTicker ticker = new FakeTicker();
+    boolean[] full = {true};
+    List<Runnable> queued = new ArrayList<>();
+    RefreshingCache<Integer> cache =
+        cache(
+            task -> {
+              if (full[0]) throw new RejectedExecutionException();
+              queued.add(task);
+            },
+            ticker);
+    Api api = new Api();
+    assertEquals(1, cache.get("pvd", api::fetch).get());
+    ticker.advance(60);
+    assertEquals(1, cache.get("pvd", api::fetch).get());
+    assertEquals(1, cache.stats().refreshFailures());
+    full[0] = false;
+    assertEquals(1, cache.get("pvd", api::fetch).get());
+    assertTrue(queued.isEmpty());
+    ticker.advance(300);
+    assertEquals(1, cache.get("pvd", api::fetch).get());
+    queued.remove(0).run();
+    assertEquals(2, cache.get("pvd", api::fetch).get());
+  }
+}
@@ -12,7 +12,7 @@ import Map, {
 } from "react-map-gl";
 import "mapbox-gl/dist/mapbox-gl.css";
 import { key } from "./private/key";
-import { initialData, geoLayer } from "./utils/overlays";
+import { initialData, geoLayer, tileOverlayData } from "./utils/overlays";
 import InputBox from "./components/InputBox";
 import MessageBox from "./components/MessageBox";
 import Pin from "./utils/pin";
@@ -59,6 +59,32 @@ function App() {
 
 
   const mapRef = useRef<MapRef>(null);
+  // a submitted filter is shown until reset, instead of the tiles in view
+  const filtered = useRef<boolean>(false);
+  // only the tiles of the latest view are shown
+  const tileRequest = useRef<number>(0);
+
+  function loadTiles() {
+    if (filtered.current || mapRef.current == null) return;
+    const bounds = mapRef.current.getBounds();
+    const request = ++tileRequest.current;
+    tileOverlayData(
+      {
+        minLat: bounds.getSouth(),
+        maxLat: bounds.getNorth(),
+        minLon: bounds.getWest(),
+        maxLon: bounds.getEast(),
+      },
+      mapRef.current.getZoom()
+    ).then((r) => {
+      if (request !== tileRequest.current || filtered.current) return;
+      if (typeof r === "string") {
+        setMessage(r);
+      } else {
+        setOverlay(r);
+      }
+    });
+  }
 
   function onMapClick(e: MapLayerMouseEvent) {
     const bbox: [PointLike, PointLike] = [
@@ -100,7 +126,14 @@ function App() {
     <div className="App">
       <div className="info">
         <InputBox
-          setOverlay={setOverlay}
+          setOverlay={(o) => {
+            filtered.current = true;
+            setOverlay(o);
+          }}
+          resetOverlay={() => {
+            filtered.current = false;
+            loadTiles();
+          }}
           setMessage={setMessage}
           setNotes={setNotes}
         ></InputBox>
@@ -114,6 +147,8 @@ function App() {
         latitude={viewState.latitude}
         zoom={viewState.zoom}
         onMove={(ev: ViewStateChangeEvent) => setViewState(ev.viewState)}
+        onLoad={loadTiles}
+        onMoveEnd={loadTiles}
         onClick={onMapClick}
         style={{ width: window.innerWidth, height: window.innerHeight }}
         mapStyle={"mapbox://styles/mapbox/dark-v10"}
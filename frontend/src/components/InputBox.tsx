@@ -4,6 +4,7 @@ import { overlayData } from "../utils/overlays";
 
 interface InputBoxProps {
   setOverlay: (o: GeoJSON.FeatureCollection) => any;
+  resetOverlay?: () => any;
   setMessage: (o: string) => any;
   setNotes: (o: [Note]) => any;
 }
@@ -103,6 +104,7 @@ function InputBox(props: InputBoxProps) {
     setmaxLat("");
     setminLon("");
     setmaxLon("");
+    props.resetOverlay?.();
   }
 
   return (
@@ -29,7 +29,8 @@ async function fetchData(
 
 /**
  * get overlay data from backend
- * @param filter include arg for latitude and longitude
+ * @param filter include arg for latitude and longitude, and optionally the mode
+ *   "contained" (default) or "intersects"
  * @returns
  */
 export function overlayData(filter: {
@@ -37,11 +38,105 @@ export function overlayData(filter: {
   maxLat: string | undefined;
   minLon: string | undefined;
   maxLon: string | undefined;
+  mode?: "contained" | "intersects";
 }): Promise<GeoJSON.FeatureCollection | string> {
   const url = `http://localhost:3232/filter?filter=` + JSON.stringify(filter);
   return fetchData(url);
 }
 
+/**
+ * slippy-map tile column of a longitude
+ * @param lon longitude
+ * @param z zoom
+ * @returns tile column
+ */
+function tileX(lon: number, z: number): number {
+  const n = 2 ** z;
+  return Math.min(n - 1, Math.max(0, Math.floor(((lon + 180) / 360) * n)));
+}
+
+/**
+ * slippy-map tile row of a latitude
+ * @param lat latitude
+ * @param z zoom
+ * @returns tile row
+ */
+function tileY(lat: number, z: number): number {
+  const n = 2 ** z;
+  const rad = (lat * Math.PI) / 180;
+  const y = Math.floor(
+    ((1 - Math.log(Math.tan(rad) + 1 / Math.cos(rad)) / Math.PI) / 2) * n
+  );
+  return Math.min(n - 1, Math.max(0, y));
+}
+
+// most tiles kept, about a few screens of panning at one zoom
+const MAX_TILES = 256;
+
+// tiles already fetched, shared across pans, least recently used first
+const tileCache = new Map<string, Promise<GeoJSON.FeatureCollection | string>>();
+
+/**
+ * get a tile from the cache or the backend, marking it most recently used
+ * @param key tile key, z/x/y
+ * @returns the tile features
+ */
+function getTile(key: string): Promise<GeoJSON.FeatureCollection | string> {
+  let tile = tileCache.get(key);
+  if (tile === undefined) {
+    // a failed fetch resolves to the error, and is dropped once seen
+    tile = fetchData(`http://localhost:3232/tiles/` + key).catch(
+      () => "Error: server not response."
+    );
+  } else {
+    tileCache.delete(key);
+  }
+  tileCache.set(key, tile);
+  while (tileCache.size > MAX_TILES) {
+    const oldest = tileCache.keys().next().value as string;
+    tileCache.delete(oldest);
+  }
+  return tile;
+}
+
+/**
+ * get overlay data for the visible area from backend tiles, reusing tiles fetched before
+ * @param bounds visible area
+ * @param zoom map zoom, tiles are fetched at this zoom rounded down
+ * @returns the features of every tile covering the area
+ */
+export async function tileOverlayData(
+  bounds: { minLat: number; maxLat: number; minLon: number; maxLon: number },
+  zoom: number
+): Promise<GeoJSON.FeatureCollection | string> {
+  const z = Math.max(0, Math.min(22, Math.floor(zoom)));
+  const keys: string[] = [];
+  const requests: Promise<GeoJSON.FeatureCollection | string>[] = [];
+  for (let x = tileX(bounds.minLon, z); x <= tileX(bounds.maxLon, z); x++) {
+    for (let y = tileY(bounds.maxLat, z); y <= tileY(bounds.minLat, z); y++) {
+      const key = `${z}/${x}/${y}`;
+      keys.push(key);
+      requests.push(getTile(key));
+    }
+  }
+  const tiles = await Promise.all(requests);
+  const features: GeoJSON.Feature[] = [];
+  let error: string | undefined = undefined;
+  for (let i = 0; i < tiles.length; i++) {
+    const tile = tiles[i];
+    if (typeof tile === "string") {
+      // do not keep failures, ask again next time
+      if (tileCache.get(keys[i]) === requests[i]) tileCache.delete(keys[i]);
+      error = tile;
+    } else {
+      features.push(...tile.features);
+    }
+  }
+  return error !== undefined
+    ? error
+    : { type: "FeatureCollection", features: features };
+}
+
 /**
  * initial data with local
  * @returns GeoJson data